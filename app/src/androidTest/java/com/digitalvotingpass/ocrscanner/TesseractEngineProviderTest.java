@@ -0,0 +1,113 @@
+package com.digitalvotingpass.ocrscanner;
+
+import android.os.Debug;
+import android.support.test.rule.ActivityTestRule;
+import android.util.Log;
+
+import com.digitalvotingpass.digitalvotingpass.ManualInputActivity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class TesseractEngineProviderTest {
+    private static final String TAG = "TestTesseractEngines: ";
+
+    private TesseractEngineProvider provider;
+
+    /**
+     * Start an activity to be able to access the assets.
+     */
+    @Rule
+    public ActivityTestRule<ManualInputActivity> activityRule = new ActivityTestRule<>(ManualInputActivity.class);
+
+    @Before
+    public void init() throws Exception {
+        provider = TesseractEngineProvider.getInstance(activityRule.getActivity());
+        provider.endIdle();
+    }
+
+    @After
+    public void end() throws Exception {
+        provider.endIdle();
+    }
+
+    @Test
+    public void testEngineReused() throws Exception {
+        TesseractEngine engine = provider.acquire();
+        provider.release(engine);
+        assertSame(engine, provider.acquire());
+        assertEquals(1, provider.getEngineCount());
+        provider.release(engine);
+    }
+
+    @Test
+    public void testPrewarm() throws Exception {
+        long start = System.currentTimeMillis();
+        provider.prewarm();
+        while (provider.getIdleCount() < TesseractEngineProvider.getWorkerCount()
+                && System.currentTimeMillis() - start < 30000) {
+            Thread.sleep(50);
+        }
+        Log.i(TAG, "Prewarmed in " + (System.currentTimeMillis() - start) + " ms");
+        assertEquals(TesseractEngineProvider.getWorkerCount(), provider.getIdleCount());
+        // Taking an engine no longer loads the model
+        start = System.currentTimeMillis();
+        TesseractEngine engine = provider.acquire();
+        Log.i(TAG, "Acquired prewarmed engine in " + (System.currentTimeMillis() - start) + " ms");
+        assertEquals(TesseractEngineProvider.getWorkerCount(), provider.getEngineCount());
+        provider.release(engine);
+    }
+
+    /**
+     * Loads an engine for every worker at the same time, like the OCR threads do, and logs the
+     * start-up time and native memory for every number of workers.
+     */
+    @Test
+    public void testStartUpPerWorkerCount() throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int workers = 1; workers <= cores; workers++) {
+            final List<TesseractEngine> engines = new ArrayList<>();
+            List<Thread> threads = new ArrayList<>();
+            long nativeBefore = Debug.getNativeHeapAllocatedSize();
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < workers; i++) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            TesseractEngine engine = provider.acquire();
+                            synchronized (engines) {
+                                engines.add(engine);
+                            }
+                        } catch (Exception e) {
+                            e.printStackTrace();
+                        }
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            long millis = System.currentTimeMillis() - start;
+            long nativeBytes = Debug.getNativeHeapAllocatedSize() - nativeBefore;
+            Log.i(TAG, "Workers: " + workers + ", start-up " + millis + " ms, native heap +"
+                    + nativeBytes / 1024 + " KiB, per worker " + nativeBytes / workers / 1024 + " KiB");
+            assertEquals(workers, engines.size());
+            assertEquals(workers, provider.getEngineCount());
+            for (TesseractEngine engine : engines) {
+                provider.release(engine);
+            }
+            provider.endIdle();
+        }
+    }
+}
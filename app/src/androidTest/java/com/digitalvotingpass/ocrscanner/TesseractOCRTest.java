@@ -50,9 +50,8 @@ public class TesseractOCRTest {
 
     @Before
     public void init() throws Exception {
-        AssetManager assetmanager;
-        assetmanager = activityRule.getActivity().getAssets();
-        tesseractOCR = new TesseractOCR("test", fragmentMock, assetmanager);
+        tesseractOCR = new TesseractOCR("test", 0, fragmentMock,
+                TesseractEngineProvider.getInstance(activityRule.getActivity()));
         tesseractOCR.init();
         tesseractOCR.isInitialized = true;
     }
@@ -64,7 +63,7 @@ public class TesseractOCRTest {
 
     @Test
     public void testOcrNullInput() throws Exception {
-        assertNull(tesseractOCR.ocr(null));
+        assertNull(tesseractOCR.ocr((Bitmap) null));
     }
 
     @Test
@@ -0,0 +1,82 @@
+package com.digitalvotingpass.blockchain;
+
+import org.bitcoinj.core.Address;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded least-recently-used cache mapping the raw 81-byte AA public key of a travel document
+ * to its decoded MultiChain {@link Address}.
+ * Deriving an address is relatively expensive and is done several times for the same voter,
+ * so the result is remembered for the most recent voters.
+ */
+class AddressCache {
+    static final int DEFAULT_CAPACITY = 64;
+
+    private final LinkedHashMap<ByteBuffer, Address> entries;
+    private long hits = 0;
+    private long misses = 0;
+
+    AddressCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity the maximum number of addresses kept in the cache.
+     */
+    AddressCache(final int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive");
+        // access order, so the eldest entry is always the least recently used one
+        this.entries = new LinkedHashMap<ByteBuffer, Address>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, Address> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Look up the address belonging to the given raw public key.
+     * @param rawKey raw public key bytes.
+     * @return the cached address or null when it is not in the cache.
+     */
+    synchronized Address get(byte[] rawKey) {
+        Address address = entries.get(ByteBuffer.wrap(rawKey));
+        if (address == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return address;
+    }
+
+    /**
+     * Store the address belonging to the given raw public key, evicting the least recently
+     * used entry when the cache is full.
+     * @param rawKey raw public key bytes, copied so the caller may reuse the array.
+     * @param address the derived address.
+     */
+    synchronized void put(byte[] rawKey, Address address) {
+        entries.put(ByteBuffer.wrap(rawKey.clone()), address);
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        hits = 0;
+        misses = 0;
+    }
+}
@@ -3,11 +3,13 @@ package com.digitalvotingpass.blockchain;
 import android.content.Context;
 import android.os.Environment;
 
+import com.digitalvotingpass.digitalvotingpass.BuildConfig;
 import com.digitalvotingpass.digitalvotingpass.R;
 import com.digitalvotingpass.electionchoice.Election;
 import com.digitalvotingpass.passportconnection.PassportConnection;
 import com.digitalvotingpass.passportconnection.PassportTransactionFormatter;
 import com.digitalvotingpass.transactionhistory.TransactionHistoryItem;
+import com.digitalvotingpass.utilities.MultiChainAddressDeriver;
 import com.digitalvotingpass.utilities.MultiChainAddressGenerator;
 import com.digitalvotingpass.utilities.Util;
 import com.google.common.util.concurrent.MoreExecutors;
@@ -56,6 +58,9 @@ public class BlockChain {
             0xf5dec1feL
     );
     private Address masterAddress = Address.fromBase58(params, "1GoqgbPZUV2yuPZXohtAvB2NZbjcew8Rk93mMn");
+    private final MultiChainAddressDeriver addressDeriver = new MultiChainAddressDeriver(version, Long.toString(addressChecksum));
+    private final AddressCache addressCache = new AddressCache();
+    private volatile boolean consolidateUtxos = BuildConfig.CONSOLIDATE_UTXOS;
 
     private BlockChain(Context ctx) {
         this.context = ctx;
@@ -122,7 +127,7 @@ public class BlockChain {
      */
     public int getVotingPassAmount(PublicKey pubKey, Asset mcAsset) {
         if(pubKey != null && mcAsset != null) {
-            Address mcAddress = Address.fromBase58(params, MultiChainAddressGenerator.getPublicAddress(version, Long.toString(addressChecksum), pubKey));
+            Address mcAddress = getAddress(pubKey);
             return (int) kit.wallet().getAssetBalance(mcAsset, mcAddress).getBalance();
         } else {
             return 0;
@@ -150,10 +155,20 @@ public class BlockChain {
      * @return
      */
     public AssetBalance getVotingPassBalance(PublicKey pubKey, Asset asset) {
-        Address address = Address.fromBase58(params, MultiChainAddressGenerator.getPublicAddress(version, Long.toString(addressChecksum), pubKey));
+        Address address = getAddress(pubKey);
         return kit.wallet().getAssetBalance(asset, address);
     }
 
+    /**
+     * Spend all outputs of a balance in one transaction with multiple inputs instead of one
+     * transaction per output. Every input is still signed separately by the travel document.
+     * Off by default, see the CONSOLIDATE_UTXOS build config field, this is the explicit opt-in.
+     * @param consolidateUtxos true to combine the outputs when possible.
+     */
+    public void setConsolidateUtxos(boolean consolidateUtxos) {
+        this.consolidateUtxos = consolidateUtxos;
+    }
+
     /**
      * Spends all outputs in this balance to the master address.
      * @param balance
@@ -162,8 +177,17 @@ public class BlockChain {
 
     public ArrayList<byte[]> getSpendUtxoTransactions(PublicKey pubKey, AssetBalance balance, PassportConnection pcon) throws Exception {
         ArrayList<byte[]> transactions = new ArrayList<>();
+        List<TransactionOutput> utxos = new ArrayList<>();
         for (TransactionOutput utxo : balance) {
-            transactions.add(utxoToSignedTransaction(pubKey, utxo, masterAddress, pcon));
+            utxos.add(utxo);
+        }
+        if (consolidateUtxos && utxos.size() > 1 && PassportTransactionFormatter.canCombine(utxos)) {
+            transactions.add(new PassportTransactionFormatter(utxos, masterAddress)
+                    .buildAndSign(pubKey, pcon));
+        } else {
+            for (TransactionOutput utxo : utxos) {
+                transactions.add(utxoToSignedTransaction(pubKey, utxo, masterAddress, pcon));
+            }
         }
         return transactions;
     }
@@ -208,11 +232,32 @@ public class BlockChain {
 
     /**
      * Returns the address corresponding to the pubkey.
+     * Addresses of recently seen keys are taken from the address cache instead of derived again.
      * @param pubKey
      * @return Address
      */
     public Address getAddress(PublicKey pubKey) {
-        return Address.fromBase58(params, MultiChainAddressGenerator.getPublicAddress(version, Long.toString(addressChecksum), pubKey));
+        byte[] rawKey = MultiChainAddressGenerator.getRawPublicKey(pubKey);
+        Address address = addressCache.get(rawKey);
+        if (address == null) {
+            address = Address.fromBase58(params, addressDeriver.getPublicAddress(rawKey));
+            addressCache.put(rawKey, address);
+        }
+        return address;
+    }
+
+    /**
+     * @return the number of address lookups that were served from the address cache.
+     */
+    public long getAddressCacheHits() {
+        return addressCache.getHits();
+    }
+
+    /**
+     * @return the number of address lookups that required a new address derivation.
+     */
+    public long getAddressCacheMisses() {
+        return addressCache.getMisses();
     }
 
     /**
@@ -223,7 +268,7 @@ public class BlockChain {
      */
     public List<TransactionHistoryItem> getMyTransactions(PublicKey pubKey, Asset assetFilter) {
         List<TransactionHistoryItem> result = new ArrayList<>();
-        Address address = Address.fromBase58(params, MultiChainAddressGenerator.getPublicAddress(version, Long.toString(addressChecksum), pubKey));
+        Address address = getAddress(pubKey);
         List<Transaction> ts = kit.wallet().getAssetTransactions(address, assetFilter);
 
         for (Transaction transaction : ts) {
@@ -19,13 +19,18 @@ package com.digitalvotingpass.camera;/*
 import android.Manifest;
 import android.app.Activity;
 import android.app.Fragment;
+import android.content.BroadcastReceiver;
+import android.content.Context;
 import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.PackageManager;
-import android.graphics.Bitmap;
 import android.graphics.Matrix;
+import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.SurfaceTexture;
 import android.graphics.Typeface;
+import android.media.Image;
+import android.os.BatteryManager;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
@@ -50,8 +55,16 @@ import com.digitalvotingpass.digitalvotingpass.DocumentData;
 import com.digitalvotingpass.digitalvotingpass.MainActivity;
 import com.digitalvotingpass.digitalvotingpass.ManualInputActivity;
 import com.digitalvotingpass.digitalvotingpass.R;
+import com.digitalvotingpass.ocrscanner.FramePool;
+import com.digitalvotingpass.ocrscanner.FrameQualityFilter;
+import com.digitalvotingpass.ocrscanner.FrameScheduler;
+import com.digitalvotingpass.ocrscanner.LuminanceFrame;
 import com.digitalvotingpass.ocrscanner.Mrz;
+import com.digitalvotingpass.ocrscanner.MrzConsensus;
+import com.digitalvotingpass.ocrscanner.MrzReading;
+import com.digitalvotingpass.ocrscanner.TesseractEngineProvider;
 import com.digitalvotingpass.ocrscanner.TesseractOCR;
+import com.digitalvotingpass.ocrscanner.WorkerController;
 import com.digitalvotingpass.utilities.ErrorDialog;
 
 import java.util.ArrayList;
@@ -63,7 +76,6 @@ public class CameraFragment extends Fragment implements FragmentCompat.OnRequest
     private static final String TAG = "CameraFragment";
     private static final String FRAGMENT_DIALOG = "dialog";
 
-    private static final int DELAY_BETWEEN_OCR_THREADS_MILLIS = 500;
     private List<TesseractOCR> tesseractThreads = new ArrayList<>();
     private boolean resultFound = false;
     private Runnable scanningTakingLongTimeout = new Runnable() {
@@ -90,6 +102,13 @@ public class CameraFragment extends Fragment implements FragmentCompat.OnRequest
     private static final int REQUEST_CAMERA_PERMISSION = 1;
     private static final int REQUEST_WRITE_PERMISSIONS = 3;
 
+    /**
+     * Minimum sharpness (variance of the Laplacian) and contrast (standard deviation of the
+     * luminance) a frame should have to be scanned.
+     */
+    private static final double MIN_FRAME_SHARPNESS = 50;
+    private static final double MIN_FRAME_CONTRAST = 15;
+
     boolean mIsStateAlreadySaved = false;
     boolean mPendingShowDialog = false;
 
@@ -145,6 +164,39 @@ public class CameraFragment extends Fragment implements FragmentCompat.OnRequest
      */
     private CameraHandler mCameraHandler;
 
+    /**
+     * Passes the scan segment of preview frames to the OCR threads. Frames come from the pool
+     * and go back to it after they are scanned or replaced by a newer frame, so no buffers are
+     * allocated per frame.
+     */
+    private FramePool framePool;
+    private FrameScheduler frameScheduler;
+    private final MrzConsensus consensus = new MrzConsensus();
+    private final FrameQualityFilter frameFilter = new FrameQualityFilter(MIN_FRAME_SHARPNESS, MIN_FRAME_CONTRAST);
+
+    /**
+     * Chooses how many of the OCR threads scan. The battery temperature stands in for the
+     * thermal state of the device, which has no API before Android 10.
+     */
+    private WorkerController workerController;
+    private final BroadcastReceiver batteryReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            setBatteryTemperature(intent);
+        }
+    };
+
+    /**
+     * Layout values needed to crop preview frames, set on the UI thread in configureTransform.
+     */
+    private volatile Rect scanRect;
+    /**
+     * The scan segment as fractions of the upright preview image, through the same scale and
+     * translation as the preview on the texture view.
+     */
+    private volatile RectF scanFraction;
+    private volatile int displayRotation;
+
 
     public static CameraFragment newInstance() {
         return new CameraFragment();
@@ -162,7 +214,11 @@ public class CameraFragment extends Fragment implements FragmentCompat.OnRequest
                 configureTransform(mTextureView.getWidth(), mTextureView.getHeight());
             }
         };
-        int threadsToStart = Runtime.getRuntime().availableProcessors() / 2;
+        int threadsToStart = TesseractEngineProvider.getWorkerCount();
+        // A frame for every OCR thread, one being filled by the camera and the queued frame
+        framePool = new FramePool(threadsToStart + 2, 0);
+        frameScheduler = new FrameScheduler(framePool, 1);
+        workerController = new WorkerController(threadsToStart);
         createOCRThreads(threadsToStart);
         mCameraHandler = new CameraHandler(this);
     }
@@ -173,7 +229,8 @@ public class CameraFragment extends Fragment implements FragmentCompat.OnRequest
      */
     private void createOCRThreads(int amount) {
         for (int i = 0; i < amount; i++) {
-            tesseractThreads.add(new TesseractOCR("Thread no " + i, this, getActivity().getAssets()));
+            tesseractThreads.add(new TesseractOCR("Thread no " + i, i, this,
+                    TesseractEngineProvider.getInstance(getActivity())));
         }
         Log.e(TAG, "Running threads: " + amount);
     }
@@ -234,6 +291,9 @@ public class CameraFragment extends Fragment implements FragmentCompat.OnRequest
     public void onResume() {
         super.onResume();
         mCameraHandler.startBackgroundThread();
+        // The battery status is sticky, the current temperature is returned right away
+        setBatteryTemperature(getActivity().registerReceiver(batteryReceiver,
+                new IntentFilter(Intent.ACTION_BATTERY_CHANGED)));
         // When the screen is turned off and turned back on, the SurfaceTexture is already
         // available, and "onSurfaceTextureAvailable" will not be called. In that case, we can open
         // a camera and start preview from here (otherwise, we wait until the surface is ready in
@@ -272,6 +332,7 @@ public class CameraFragment extends Fragment implements FragmentCompat.OnRequest
         mCameraHandler.closeCamera();
         mCameraHandler.stopBackgroundThread();
         stopTesseractThreads();
+        getActivity().unregisterReceiver(batteryReceiver);
         mIsStateAlreadySaved = true;
         super.onPause();
     }
@@ -341,37 +402,73 @@ public class CameraFragment extends Fragment implements FragmentCompat.OnRequest
             Log.e(TAG, "Cant start OCR due to no camera permissions.");
             return;
         }
-        int i = 0;
+        frameScheduler.open();
+        workerController.open();
+        consensus.clear();
         for(TesseractOCR ocr : tesseractThreads) {
             ocr.initialize();
-            ocr.startScanner(i);
-            i += DELAY_BETWEEN_OCR_THREADS_MILLIS;
+            ocr.startScanner();
         }
     }
 
 
 
     private void stopTesseractThreads() {
+        // Wake up the threads waiting for a frame or their turn, so they can stop
+        frameScheduler.close();
+        workerController.close();
         for (TesseractOCR ocr : tesseractThreads) {
             ocr.stopScanner();
         }
+        Log.i(TAG, "Frames used: " + framePool.getAcquired() + ", pool misses: " + framePool.getMisses()
+                + ", frames queued: " + frameScheduler.getOffered() + ", dropped: " + frameScheduler.getDropped());
+        Log.i(TAG, "Frames checked: " + frameFilter.getChecked() + ", blurry: " + frameFilter.getBlurry()
+                + ", low contrast: " + frameFilter.getLowContrast() + ", skip rate: " + frameFilter.getSkipRate());
+        Log.i(TAG, "Readings combined: " + consensus.getReadings() + ", resets: " + consensus.getResets());
+        Log.i(TAG, "OCR threads scanning: " + workerController.getWorkers() + " of " + tesseractThreads.size()
+                + ", changes: " + workerController.getChanges()
+                + ", frames per second: " + workerController.getThroughput()
+                + ", latency: " + workerController.getLatency() + " ms");
+    }
+
+    /**
+     * Pass the battery temperature of a battery status intent to the worker controller.
+     * @param intent the sticky {@link Intent#ACTION_BATTERY_CHANGED} intent, can be null.
+     */
+    private void setBatteryTemperature(Intent intent) {
+        if (intent == null || !intent.hasExtra(BatteryManager.EXTRA_TEMPERATURE)) {
+            workerController.setTemperature(Float.NaN);
+            return;
+        }
+        // In tenths of a degree Celsius
+        workerController.setTemperature(intent.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, 0) / 10f);
     }
 
 
 
     /**
-     * Method for delivering correct MRZ when found. This method returns the MRZ as result data and
-     * then exits the activity. This method is synchronized and checks for a boolean to make sure
-     * it is only executed once in this fragments lifetime.
-     * @param mrz Mrz
+     * Combine a reading of an OCR thread that is not a valid MRZ on its own with the earlier
+     * readings of this scan.
+     * @return the combined MRZ when it is valid, otherwise null.
      */
-    public synchronized void scanResultFound(final Mrz mrz) {
+    public Mrz addReading(MrzReading reading) {
+        return consensus.add(reading);
+    }
+
+    /**
+     * Method for delivering the document data of a correct MRZ when found. This method returns
+     * the document data as result data and then exits the activity. This method is synchronized
+     * and checks for a boolean to make sure it is only executed once in this fragments lifetime.
+     * @param data DocumentData of the MRZ
+     */
+    public synchronized void scanResultFound(final DocumentData data) {
         if (!resultFound) {
             for (TesseractOCR thread : tesseractThreads) {
                 thread.stopping = true;
             }
+            frameScheduler.close();
+            workerController.close();
             Intent returnIntent = new Intent();
-            DocumentData data = mrz.getPrettyData();
             returnIntent.putExtra(DocumentData.identifier, data);
             getActivity().setResult(Activity.RESULT_OK, returnIntent);
             resultFound = true;
@@ -398,6 +495,9 @@ public class CameraFragment extends Fragment implements FragmentCompat.OnRequest
         RectF bufferRect = new RectF(0, 0, mPreviewSize.getHeight(), mPreviewSize.getWidth());
         float centerX = viewRect.centerX();
         float centerY = viewRect.centerY();
+        // Where the upright preview image ends up in the view, stretched to the view unless
+        // the transform below scales it
+        RectF imageRect = new RectF(viewRect);
         if (Surface.ROTATION_90 == rotation || Surface.ROTATION_270 == rotation) {
             bufferRect.offset(centerX - bufferRect.centerX(), centerY - bufferRect.centerY());
             matrix.setRectToRect(viewRect, bufferRect, Matrix.ScaleToFit.FILL);
@@ -406,46 +506,96 @@ public class CameraFragment extends Fragment implements FragmentCompat.OnRequest
                     (float) viewWidth / mPreviewSize.getWidth());
             matrix.postScale(scale, scale, centerX, centerY);
             matrix.postRotate(90 * (rotation - 2), centerX, centerY);
+            // Scaled to fill the view and centered, the parts outside the view are cropped
+            float imageWidth = mPreviewSize.getWidth() * scale;
+            float imageHeight = mPreviewSize.getHeight() * scale;
+            imageRect.set(centerX - imageWidth / 2, centerY - imageHeight / 2,
+                    centerX + imageWidth / 2, centerY + imageHeight / 2);
         } else if (Surface.ROTATION_180 == rotation) {
             matrix.postRotate(180, centerX, centerY);
         }
         mTextureView.setTransform(matrix);
-        overlay.setRect(CameraFragmentUtil.getScanRect(scanSegment));
+        scanRect = CameraFragmentUtil.getScanRect(scanSegment);
+        scanFraction = CameraFragmentUtil.getScanFraction(scanRect, imageRect);
+        displayRotation = rotation;
+        overlay.setRect(scanRect);
     }
 
     /**
-     * Extract a bitmap from the textureview of this fragment.
-     * @return
+     * Crop the scan segment out of the luminance of a new preview frame, turned upright with
+     * the rotation of the display. Called on the camera thread for every preview frame.
+     * @param image YUV image from the camera, only valid during this call.
+     * @param sensorOrientation orientation of the camera sensor in degrees.
      */
-    public Bitmap extractBitmap() {
-        try {
-            Bitmap bitmap = mTextureView.getBitmap();
-            int rotate = Surface.ROTATION_0;
-            switch (getActivity().getWindowManager().getDefaultDisplay().getRotation()) {
-                case Surface.ROTATION_0:
-                    rotate = 0;
-                    break;
-                case Surface.ROTATION_90:
-                    rotate = 270;
-                    break;
-                case Surface.ROTATION_180:
-                    rotate = 180;
-                    break;
-                case Surface.ROTATION_270:
-                    rotate = 90;
-                    break;
-            }
-            if (rotate != Surface.ROTATION_0) {
-                bitmap = CameraFragmentUtil.rotateBitmap(bitmap, rotate);
+    public void onPreviewImage(Image image, int sensorOrientation) {
+        RectF scan = scanFraction;
+        // Only crop frames an OCR thread is waiting for
+        if (scan == null || !frameScheduler.isWaiting()) {
+            return;
+        }
+        int rotation = CameraFragmentUtil.getImageRotation(sensorOrientation, displayRotation);
+        boolean swapped = rotation == 90 || rotation == 270;
+        int uprightWidth = swapped ? image.getHeight() : image.getWidth();
+        int uprightHeight = swapped ? image.getWidth() : image.getHeight();
+
+        // Scale the scan segment to the image, the preview may be cropped by the view
+        int left = Math.max(0, (int) (scan.left * uprightWidth));
+        int top = Math.max(0, (int) (scan.top * uprightHeight));
+        int right = Math.min(uprightWidth, (int) (scan.right * uprightWidth));
+        int bottom = Math.min(uprightHeight, (int) (scan.bottom * uprightHeight));
+        if (right <= left || bottom <= top) {
+            return;
+        }
+
+        Image.Plane luminance = image.getPlanes()[0];
+        LuminanceFrame frame = frameScheduler.acquire();
+        frame.cropFrom(luminance.getBuffer(), luminance.getRowStride(), luminance.getPixelStride(),
+                image.getWidth(), image.getHeight(), rotation, left, top, right - left, bottom - top);
+        if (frameFilter.accept(frame)) {
+            frameScheduler.offer(frame);
+        } else {
+            // Blurry or empty frames cannot pass the checksums, wait for the next one
+            frameScheduler.release(frame);
+        }
+    }
+
+    /**
+     * Wait for the scan segment of the next preview frame. Every frame is handed to one OCR
+     * thread only, which should give it back with {@link #releaseFrame(LuminanceFrame)}.
+     * OCR threads that are not needed wait here until the worker controller lets them scan.
+     * @param worker the index of the OCR thread.
+     * @return the frame or null when scanning stopped.
+     */
+    public LuminanceFrame takeFrame(int worker) throws InterruptedException {
+        while (workerController.awaitTurn(worker)) {
+            LuminanceFrame frame = frameScheduler.take();
+            // The number of threads may have dropped while this one waited for the frame
+            if (frame == null || workerController.mayScan(worker)) {
+                return frame;
             }
-            Bitmap croppedBitmap = CameraFragmentUtil.cropBitmap(bitmap, scanSegment);
+            frameScheduler.putBack(frame);
+        }
+        return null;
+    }
 
-            return CameraFragmentUtil.getResizedBitmap(croppedBitmap, croppedBitmap.getWidth(), croppedBitmap.getHeight());
-        } catch (Exception e) {
-            e.printStackTrace();
-            return null;
+    /**
+     * Count a frame an OCR thread is done with, so the worker controller can measure the
+     * throughput and latency of the OCR threads.
+     * @param latencyMillis the time scanning the frame took.
+     */
+    public void frameDone(long latencyMillis) {
+        if (workerController.frameDone(latencyMillis)) {
+            Log.i(TAG, "OCR threads scanning: " + workerController.getWorkers()
+                    + ", frames per second: " + workerController.getThroughput()
+                    + ", latency: " + workerController.getLatency() + " ms");
         }
+    }
 
+    /**
+     * Give back a frame taken with {@link #takeFrame(int)} after it has been scanned.
+     */
+    public void releaseFrame(LuminanceFrame frame) {
+        frameScheduler.release(frame);
     }
 
     public Size getPreviewSize() {
@@ -1,9 +1,8 @@
 package com.digitalvotingpass.camera;
 
 import android.app.Activity;
-import android.graphics.Bitmap;
-import android.graphics.Matrix;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.hardware.camera2.CameraCharacteristics;
 import android.util.Log;
 import android.util.Size;
@@ -71,63 +70,6 @@ public class CameraFragmentUtil {
         }
     }
 
-    /**
-     * Rotate the bitmap a given amount of degrees. This is used to get the correct bitmap when
-     * the device is in landscape mode.
-     * @param bitmap
-     * @param degrees
-     * @return a rotated bitmap
-     */
-    public static Bitmap rotateBitmap(Bitmap bitmap, int degrees) {
-        int w = bitmap.getWidth();
-        int h = bitmap.getHeight();
-        // Setting pre rotate
-        Matrix mtx = new Matrix();
-        mtx.preRotate(degrees);
-        // Rotating Bitmap
-        Bitmap rotated = Bitmap.createBitmap(bitmap, 0, 0, w, h, mtx, true);
-        return Bitmap.createScaledBitmap(rotated, bitmap.getWidth(), bitmap.getHeight(), true);
-    }
-
-    /**
-     * Resize a bitmap and return the resized one.
-     * @param bm - Initial bitmap
-     * @param newWidth
-     * @param newHeight
-     * @return a resized bitmap
-     */
-    public static Bitmap getResizedBitmap(Bitmap bm, int newWidth, int newHeight) {
-        int width = bm.getWidth();
-        int height = bm.getHeight();
-        float scaleWidth = ((float) newWidth) / width;
-        float scaleHeight = ((float) newHeight) / height;
-        // CREATE A MATRIX FOR THE MANIPULATION
-        Matrix matrix = new Matrix();
-        // RESIZE THE BIT MAP
-        matrix.postScale(scaleWidth, scaleHeight);
-
-        // "RECREATE" THE NEW BITMAP
-        Bitmap resizedBitmap = Bitmap.createBitmap(
-                bm, 0, 0, width, height, matrix, false);
-        bm.recycle();
-        return resizedBitmap;
-    }
-
-    /**
-     * Crop the bitmap to only the part of the scansegment. The bitmap should only contain the part
-     * that displays the MRZ of a travel document.
-     * @param bitmap - The bitmap created from the camerapreview
-     * @param scanSegment - Scansegment, the segment that should be scanned with OCR
-     * @return
-     */
-    public static Bitmap cropBitmap(Bitmap bitmap, ImageView scanSegment) {
-        int startX = (int) scanSegment.getX();
-        int startY = (int) scanSegment.getY();
-        int width = scanSegment.getWidth();
-        int length = scanSegment.getHeight();
-        return Bitmap.createBitmap(bitmap, startX, startY, width, length);
-    }
-
     /**
      * Get the scan rectangle.
      * @return The rectangle.
@@ -140,6 +82,47 @@ public class CameraFragmentUtil {
         return new Rect(startX, startY, startX + width, startY + length);
     }
 
+    /**
+     * Get the position of the scan segment in the preview image.
+     * @param scanRect - The scan segment in view coordinates
+     * @param imageRect - Where the upright preview image is shown, in view coordinates
+     * @return the scan segment as fractions of the width and height of the upright image, or
+     * null when the image has no size yet
+     */
+    public static RectF getScanFraction(Rect scanRect, RectF imageRect) {
+        if (imageRect.width() <= 0 || imageRect.height() <= 0) {
+            return null;
+        }
+        return new RectF((scanRect.left - imageRect.left) / imageRect.width(),
+                (scanRect.top - imageRect.top) / imageRect.height(),
+                (scanRect.right - imageRect.left) / imageRect.width(),
+                (scanRect.bottom - imageRect.top) / imageRect.height());
+    }
+
+    /**
+     * Get the clockwise rotation that turns an image of the camera upright on the display.
+     * @param sensorOrientation - Orientation of the camera sensor in degrees
+     * @param displayRotation - Rotation of the display, one of the Surface.ROTATION_ constants
+     * @return the rotation in degrees, one of 0, 90, 180 or 270
+     */
+    public static int getImageRotation(int sensorOrientation, int displayRotation) {
+        int displayDegrees;
+        switch (displayRotation) {
+            case Surface.ROTATION_90:
+                displayDegrees = 90;
+                break;
+            case Surface.ROTATION_180:
+                displayDegrees = 180;
+                break;
+            case Surface.ROTATION_270:
+                displayDegrees = 270;
+                break;
+            default:
+                displayDegrees = 0;
+        }
+        return (sensorOrientation - displayDegrees + 360) % 360;
+    }
+
     /**
      * Compares two {@code Size}s based on their areas.
      */
@@ -16,6 +16,8 @@ import android.hardware.camera2.CameraManager;
 import android.hardware.camera2.CaptureRequest;
 import android.hardware.camera2.params.MeteringRectangle;
 import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.Image;
+import android.media.ImageReader;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.support.annotation.NonNull;
@@ -78,6 +80,33 @@ public class CameraHandler {
 
     private boolean flashEnabled = false;
 
+    /**
+     * Receives the preview frames in YUV for OCR, next to the preview on the texture view.
+     */
+    private ImageReader mImageReader;
+    private int mSensorOrientation;
+
+    /**
+     * Hands the luminance of every new preview frame to the fragment. The image is closed
+     * right away, so the camera never runs out of buffers.
+     */
+    private final ImageReader.OnImageAvailableListener mOnImageAvailableListener
+            = new ImageReader.OnImageAvailableListener() {
+
+        @Override
+        public void onImageAvailable(ImageReader reader) {
+            Image image = reader.acquireLatestImage();
+            if (image == null) {
+                return;
+            }
+            try {
+                fragment.onPreviewImage(image, mSensorOrientation);
+            } finally {
+                image.close();
+            }
+        }
+    };
+
     /**
      * {@link CameraDevice.StateCallback} is called when {@link CameraDevice} changes its state.
      */
@@ -175,6 +204,12 @@ public class CameraHandler {
                             mPreviewSize.getHeight(), mPreviewSize.getWidth());
                 }
 
+                //noinspection ConstantConditions
+                mSensorOrientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+                mImageReader = ImageReader.newInstance(mPreviewSize.getWidth(), mPreviewSize.getHeight(),
+                        ImageFormat.YUV_420_888, 2);
+                mImageReader.setOnImageAvailableListener(mOnImageAvailableListener, mBackgroundHandler);
+
                 // Check if the flash is supported.
                 Boolean available = characteristics.get(CameraCharacteristics.FLASH_INFO_AVAILABLE);
                 mFlashSupported = available == null ? false : available;
@@ -277,6 +312,10 @@ public class CameraHandler {
                 mCameraDevice.close();
                 mCameraDevice = null;
             }
+            if (null != mImageReader) {
+                mImageReader.close();
+                mImageReader = null;
+            }
         } catch (InterruptedException e) {
             throw new RuntimeException("Interrupted while trying to lock camera closing.", e);
         } finally {
@@ -302,8 +341,11 @@ public class CameraHandler {
             mPreviewRequestBuilder
                     = mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
             mPreviewRequestBuilder.addTarget(surface);
+            // The frames for OCR are read from the image reader instead of the texture view
+            Surface ocrSurface = mImageReader.getSurface();
+            mPreviewRequestBuilder.addTarget(ocrSurface);
             // Here, we create a CameraCaptureSession for camera preview.
-            mCameraDevice.createCaptureSession(Arrays.asList(surface), createCameraCaptureSessionStateCallBack()
+            mCameraDevice.createCaptureSession(Arrays.asList(surface, ocrSurface), createCameraCaptureSessionStateCallBack()
                     , null );
         } catch (CameraAccessException e) {
             e.printStackTrace();
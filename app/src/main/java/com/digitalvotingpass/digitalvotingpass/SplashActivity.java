@@ -24,6 +24,7 @@ import com.digitalvotingpass.blockchain.BlockChain;
 import com.digitalvotingpass.blockchain.BlockchainCallBackListener;
 import com.digitalvotingpass.electionchoice.Election;
 import com.digitalvotingpass.electionchoice.ElectionChoiceActivity;
+import com.digitalvotingpass.ocrscanner.TesseractEngineProvider;
 import com.digitalvotingpass.utilities.Util;
 import com.digitalvotingpass.utilities.ErrorDialog;
 import com.google.gson.Gson;
@@ -55,6 +56,8 @@ public class SplashActivity extends Activity implements BlockchainCallBackListen
             }
             blockChain.addListener((BlockchainCallBackListener) thisActivity);
             blockChain.startDownload();
+            // Load the OCR engines while the blockchain syncs, so the first scan does not wait
+            TesseractEngineProvider.getInstance(getApplicationContext()).prewarm();
         }
     };
 
@@ -0,0 +1,75 @@
+package com.digitalvotingpass.ocrscanner;
+
+import java.util.ArrayDeque;
+
+/**
+ * Fixed set of frames shared by the camera thread and the OCR threads. A frame is taken with
+ * {@link #acquire()}, filled, handed to one OCR thread and given back with
+ * {@link #release(LuminanceFrame)} when it has been scanned. The frames grow to the size of the
+ * scan segment on first use and are then reused, so scanning does not allocate per frame.
+ * When all frames are in use a new one is created and counted as a miss.
+ */
+public class FramePool {
+    private final int size;
+    private final ArrayDeque<LuminanceFrame> free;
+    private long acquired = 0;
+    private long misses = 0;
+
+    /**
+     * @param size the number of frames kept in the pool.
+     * @param frameCapacity the number of pixels every frame can hold before it grows.
+     */
+    public FramePool(int size, int frameCapacity) {
+        if (size < 1)
+            throw new IllegalArgumentException("Pool size should be at least 1");
+        this.size = size;
+        free = new ArrayDeque<>(size);
+        for (int i = 0; i < size; i++) {
+            free.push(new LuminanceFrame(frameCapacity));
+        }
+    }
+
+    /**
+     * Take a free frame, or a new one when all frames are in use.
+     */
+    public synchronized LuminanceFrame acquire() {
+        acquired++;
+        LuminanceFrame frame = free.poll();
+        if (frame == null) {
+            misses++;
+            frame = new LuminanceFrame();
+        }
+        return frame;
+    }
+
+    /**
+     * Give back a frame that is not used anymore. Frames above the size of the pool are left
+     * to the garbage collector.
+     */
+    public synchronized void release(LuminanceFrame frame) {
+        if (frame != null && free.size() < size) {
+            free.push(frame);
+        }
+    }
+
+    /**
+     * @return the number of frames taken from the pool.
+     */
+    public synchronized long getAcquired() {
+        return acquired;
+    }
+
+    /**
+     * @return the number of times no free frame was available.
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of free frames.
+     */
+    public synchronized int getAvailable() {
+        return free.size();
+    }
+}
@@ -0,0 +1,150 @@
+package com.digitalvotingpass.ocrscanner;
+
+/**
+ * Cheap check whether a frame is worth scanning. The frame is shrunk by averaging blocks of
+ * pixels, then the contrast (standard deviation of the luminance) and the sharpness (variance of
+ * the Laplacian) are measured. Frames without text or with motion blur or out of focus score low
+ * on one of them and cannot pass the MRZ checksums anyway, so OCR does not have to run on them.
+ * Not thread safe, the filter should be used by the camera thread only.
+ */
+public class FrameQualityFilter {
+    /**
+     * Width the frame is shrunk to before scoring, enough to keep the strokes of the MRZ
+     * characters apart.
+     */
+    private static final int SCORE_WIDTH = 240;
+
+    private final double minSharpness;
+    private final double minContrast;
+    private int[] small = new int[0];
+    private double sharpness;
+    private double contrast;
+    private long checked = 0;
+    private long blurry = 0;
+    private long lowContrast = 0;
+
+    /**
+     * @param minSharpness the variance of the Laplacian a frame should reach.
+     * @param minContrast the standard deviation of the luminance a frame should reach.
+     */
+    public FrameQualityFilter(double minSharpness, double minContrast) {
+        this.minSharpness = minSharpness;
+        this.minContrast = minContrast;
+    }
+
+    /**
+     * Score the frame and decide whether it should be scanned.
+     * @return true when the frame is sharp and has enough contrast.
+     */
+    public boolean accept(LuminanceFrame frame) {
+        score(frame);
+        checked++;
+        if (contrast < minContrast) {
+            lowContrast++;
+            return false;
+        }
+        if (sharpness < minSharpness) {
+            blurry++;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Measure the contrast and sharpness of the frame, available from {@link #getContrast()} and
+     * {@link #getSharpness()} afterwards.
+     */
+    void score(LuminanceFrame frame) {
+        byte[] data = frame.getData();
+        int width = frame.getWidth();
+        int step = Math.max(1, width / SCORE_WIDTH);
+        int w = width / step;
+        int h = frame.getHeight() / step;
+        if (small.length < w * h) {
+            small = new int[w * h];
+        }
+
+        // Average blocks of step x step pixels
+        long sum = 0;
+        long sumSquares = 0;
+        int blockSize = step * step;
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                int total = 0;
+                int row = y * step * width + x * step;
+                for (int dy = 0; dy < step; dy++, row += width) {
+                    for (int dx = 0; dx < step; dx++) {
+                        total += data[row + dx] & 0xFF;
+                    }
+                }
+                int value = total / blockSize;
+                small[y * w + x] = value;
+                sum += value;
+                sumSquares += value * value;
+            }
+        }
+        int count = w * h;
+        contrast = count == 0 ? 0 : Math.sqrt(variance(sum, sumSquares, count));
+
+        // Variance of the 4 neighbour Laplacian over the inner pixels
+        sum = 0;
+        sumSquares = 0;
+        for (int y = 1; y < h - 1; y++) {
+            for (int x = 1; x < w - 1; x++) {
+                int i = y * w + x;
+                int laplacian = 4 * small[i] - small[i - 1] - small[i + 1] - small[i - w] - small[i + w];
+                sum += laplacian;
+                sumSquares += laplacian * laplacian;
+            }
+        }
+        count = Math.max(0, w - 2) * Math.max(0, h - 2);
+        sharpness = count == 0 ? 0 : variance(sum, sumSquares, count);
+    }
+
+    private static double variance(long sum, long sumSquares, int count) {
+        double mean = (double) sum / count;
+        return Math.max(0, (double) sumSquares / count - mean * mean);
+    }
+
+    /**
+     * @return the variance of the Laplacian of the last scored frame.
+     */
+    public double getSharpness() {
+        return sharpness;
+    }
+
+    /**
+     * @return the standard deviation of the luminance of the last scored frame.
+     */
+    public double getContrast() {
+        return contrast;
+    }
+
+    /**
+     * @return the number of frames checked.
+     */
+    public long getChecked() {
+        return checked;
+    }
+
+    /**
+     * @return the number of frames skipped because they were not sharp enough.
+     */
+    public long getBlurry() {
+        return blurry;
+    }
+
+    /**
+     * @return the number of frames skipped because they had too little contrast.
+     */
+    public long getLowContrast() {
+        return lowContrast;
+    }
+
+    /**
+     * @return the fraction of checked frames that was skipped.
+     */
+    public double getSkipRate() {
+        return checked == 0 ? 0 : (double) (blurry + lowContrast) / checked;
+    }
+}
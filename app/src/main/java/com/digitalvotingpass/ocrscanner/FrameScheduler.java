@@ -0,0 +1,134 @@
+package com.digitalvotingpass.ocrscanner;
+
+import java.util.ArrayDeque;
+
+/**
+ * Passes frames from the camera thread to the OCR threads. The queue is bounded and the latest
+ * frame wins: when it is full the oldest frame is dropped and given back to the pool, so OCR
+ * threads never scan stale frames. OCR threads block in {@link #take()} until a frame arrives,
+ * and the camera thread can ask {@link #isWaiting()} to only crop frames somebody will scan.
+ */
+public class FrameScheduler {
+    private final FramePool pool;
+    private final int capacity;
+    private final ArrayDeque<LuminanceFrame> queue;
+    private boolean closed = false;
+    private int waiting = 0;
+    private long offered = 0;
+    private long dropped = 0;
+
+    /**
+     * @param pool the pool the frames come from and are given back to.
+     * @param capacity the number of frames kept for the OCR threads.
+     */
+    public FrameScheduler(FramePool pool, int capacity) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("Capacity should be at least 1");
+        this.pool = pool;
+        this.capacity = capacity;
+        queue = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * Take a free frame from the pool to fill.
+     */
+    public LuminanceFrame acquire() {
+        return pool.acquire();
+    }
+
+    /**
+     * Give back a frame that was taken or acquired and is not used anymore.
+     */
+    public void release(LuminanceFrame frame) {
+        pool.release(frame);
+    }
+
+    /**
+     * Queue a filled frame for the OCR threads. Drops the oldest frame when the queue is full.
+     */
+    public synchronized void offer(LuminanceFrame frame) {
+        if (closed) {
+            pool.release(frame);
+            return;
+        }
+        offered++;
+        if (queue.size() == capacity) {
+            pool.release(queue.pollFirst());
+            dropped++;
+        }
+        queue.addLast(frame);
+        notify();
+    }
+
+    /**
+     * Wait for the next frame. The frame should be given back with {@link #release(LuminanceFrame)}.
+     * @return the newest queued frame, or null when the scheduler is closed.
+     */
+    public synchronized LuminanceFrame take() throws InterruptedException {
+        waiting++;
+        try {
+            while (queue.isEmpty() && !closed) {
+                wait();
+            }
+        } finally {
+            waiting--;
+        }
+        if (closed) {
+            return null;
+        }
+        return queue.pollLast();
+    }
+
+    /**
+     * Queue a taken frame again for another OCR thread, when the thread that took it may not scan
+     * anymore. The frame is older than the queued frames, it is given back to the pool when the
+     * queue is full or the scheduler is closed.
+     */
+    public synchronized void putBack(LuminanceFrame frame) {
+        if (closed || queue.size() == capacity) {
+            pool.release(frame);
+            return;
+        }
+        queue.addFirst(frame);
+        notify();
+    }
+
+    /**
+     * @return true when an OCR thread is waiting for a frame that is not queued yet.
+     */
+    public synchronized boolean isWaiting() {
+        return !closed && waiting > queue.size();
+    }
+
+    /**
+     * Start accepting frames, after creation or after {@link #close()}.
+     */
+    public synchronized void open() {
+        closed = false;
+    }
+
+    /**
+     * Stop accepting frames, give back the queued frames and wake up the waiting OCR threads.
+     */
+    public synchronized void close() {
+        closed = true;
+        while (!queue.isEmpty()) {
+            pool.release(queue.poll());
+        }
+        notifyAll();
+    }
+
+    /**
+     * @return the number of frames queued for the OCR threads.
+     */
+    public synchronized long getOffered() {
+        return offered;
+    }
+
+    /**
+     * @return the number of frames replaced by a newer frame before they were scanned.
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+}
@@ -0,0 +1,131 @@
+package com.digitalvotingpass.ocrscanner;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An 8 bit greyscale image of the scan segment, one byte per pixel, rows stored after each
+ * other without padding. The buffer is reused for every frame and only grows when a larger
+ * frame is stored, so a frame can be filled over and over without allocating.
+ */
+public class LuminanceFrame {
+    private byte[] data;
+    private int width;
+    private int height;
+
+    public LuminanceFrame() {
+        this(0);
+    }
+
+    /**
+     * @param capacity the number of pixels the frame can hold before it has to grow.
+     */
+    public LuminanceFrame(int capacity) {
+        data = new byte[capacity];
+    }
+
+    /**
+     * Store a part of the luminance (Y) plane of a camera image, turned upright.
+     * The part is given in the coordinates of the upright image, so for a rotation of 90 or 270
+     * degrees the width and height of the upright image are those of the camera image swapped.
+     * @param plane the luminance plane of the camera image.
+     * @param rowStride distance in bytes between the starts of two rows in the plane.
+     * @param pixelStride distance in bytes between two pixels in a row of the plane.
+     * @param imageWidth width of the camera image.
+     * @param imageHeight height of the camera image.
+     * @param rotation clockwise rotation in degrees that turns the camera image upright,
+     *                 one of 0, 90, 180 or 270.
+     * @param left left of the part in the upright image.
+     * @param top top of the part in the upright image.
+     * @param width width of the part.
+     * @param height height of the part.
+     */
+    public void cropFrom(ByteBuffer plane, int rowStride, int pixelStride, int imageWidth, int imageHeight,
+                         int rotation, int left, int top, int width, int height) {
+        boolean swapped = rotation == 90 || rotation == 270;
+        int uprightWidth = swapped ? imageHeight : imageWidth;
+        int uprightHeight = swapped ? imageWidth : imageHeight;
+        if (rotation % 90 != 0 || rotation < 0 || rotation >= 360)
+            throw new IllegalArgumentException("Rotation should be 0, 90, 180 or 270: " + rotation);
+        if (left < 0 || top < 0 || width < 1 || height < 1
+                || left + width > uprightWidth || top + height > uprightHeight)
+            throw new IllegalArgumentException("Crop is outside of the image");
+        setSize(width, height);
+
+        // Position of the first pixel of the part in the camera image and the steps in the
+        // camera image for one pixel to the right and one pixel down in the upright image
+        int start;
+        int stepX;
+        int stepY;
+        switch (rotation) {
+            case 90:
+                start = (imageHeight - 1 - left) * rowStride + top * pixelStride;
+                stepX = -rowStride;
+                stepY = pixelStride;
+                break;
+            case 180:
+                start = (imageHeight - 1 - top) * rowStride + (imageWidth - 1 - left) * pixelStride;
+                stepX = -pixelStride;
+                stepY = -rowStride;
+                break;
+            case 270:
+                start = left * rowStride + (imageWidth - 1 - top) * pixelStride;
+                stepX = rowStride;
+                stepY = -pixelStride;
+                break;
+            default:
+                start = top * rowStride + left * pixelStride;
+                stepX = pixelStride;
+                stepY = rowStride;
+        }
+
+        int out = 0;
+        if (stepX == 1) {
+            // Rows of the part are rows in the plane, copy them at once
+            for (int y = 0; y < height; y++, out += width) {
+                plane.position(start + y * stepY);
+                plane.get(data, out, width);
+            }
+            plane.rewind();
+            return;
+        }
+        for (int y = 0; y < height; y++) {
+            int index = start + y * stepY;
+            for (int x = 0; x < width; x++, index += stepX) {
+                data[out++] = plane.get(index);
+            }
+        }
+    }
+
+    /**
+     * Make this frame a copy of the other frame.
+     */
+    public void copyFrom(LuminanceFrame other) {
+        setSize(other.width, other.height);
+        System.arraycopy(other.data, 0, data, 0, width * height);
+    }
+
+    /**
+     * Set the size of the frame, the buffer only grows when the frame does not fit.
+     */
+    public void setSize(int width, int height) {
+        if (data.length < width * height)
+            data = new byte[width * height];
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @return the pixels, the buffer may be larger than width * height.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -4,16 +4,9 @@ import com.digitalvotingpass.digitalvotingpass.DocumentData;
 
 public class Mrz {
 
-    private static final int[] PASSPORT_DOCNO_INDICES = new int[]{0, 9};
-    private static final int[] PASSPORT_DOB_INDICES = new int[]{13, 19};
-    private static final int[] PASSPORT_EXP_INDICES = new int[]{21, 27};
-
-    private static final int[] ID_DOCNO_INDICES = new int[]{5, 14};
-    private static final int[] ID_DOB_INDICES = new int[]{0, 6};
-    private static final int[] ID_EXP_INDICES = new int[]{8, 14};
-    private static final int[] PASSPORT_PERSONAL_NUMBER_INDICES = new int[]{28, 42};
-
     private String mrz;
+    private char[] first;
+    private char[] second;
 
     public Mrz(String mrz) {
         this.mrz = mrz;
@@ -21,49 +14,56 @@ public class Mrz {
     }
 
     /**
-     * Does some basic cleaning on the MRZ string of this object
-     * Done before checksum verification so may throw errors, these are ignored
+     * Does some basic cleaning on the MRZ string of this object and corrects OCR errors that the
+     * check digits point out.
+     * Spaces and empty lines are left out and only the first 2 lines are kept, sometimes random
+     * errorous data is detected beyond. Keeps the string as it is when it has less than 2 lines.
      */
     private void cleanMRZString() {
-        try {
-            String[] spl = mrz.replace(" ", "").replace("\n\n", "\n").split("\n"); // Delete any space characters and replace double newline with a single newline
-            mrz = spl[0] + "\n" + spl[1]; // Extract only first 2 lines, sometimes random errorous data is detected beyond.
-        }catch (Exception ignored) {
+        if (mrz == null) {
+            return;
         }
-    }
-
-    /**
-     * Performs checksum calculation of the given string's chars from start til end.
-     * Uses value at index {@code checkIndex} in {@code string} as check value.
-     * @param string String to be checked
-     * @param ranges indices of substrings to be checked
-     * @param checkIndex index of char to check against
-     * @return boolean whether check was successful
-     */
-    private static boolean checkSum (String string, int[][] ranges, int checkIndex) {
-        int[] code = { 7, 3, 1};
-        int checkValue = Character.getNumericValue(string.charAt(checkIndex));
-        int count = 0;
-        float checkSum = 0;
-        for (int[] range : ranges) {
-            char[] line = string.substring(range[0], range[1]).toCharArray();
-            for (char c : line) {
-                int num;
-                if (Character.toString(c).matches("[A-Z]")) {
-                    num = ((int) c - 55);
-                } else if (Character.toString(c).matches("\\d")) {
-                    num = Character.getNumericValue(c);
-                } else if (Character.toString(c).matches("<")) {
-                    num = 0;
+        // Start, end and number of characters of the first 2 lines that are not empty
+        int firstStart = 0, firstEnd = 0, firstCount = 0;
+        int secondStart = 0, secondEnd = 0, secondCount = 0;
+        boolean inSecond = false;
+        for (int i = 0; i < mrz.length(); i++) {
+            char c = mrz.charAt(i);
+            if (c == '\n') {
+                if (inSecond && secondCount > 0) {
+                    break;
+                }
+                inSecond = firstCount > 0;
+            } else if (c != ' ') {
+                if (!inSecond) {
+                    if (firstCount++ == 0) firstStart = i;
+                    firstEnd = i + 1;
                 } else {
-                    return false; //illegal character
+                    if (secondCount++ == 0) secondStart = i;
+                    secondEnd = i + 1;
                 }
-                checkSum += num * code[count%3];
-                count++;
             }
         }
-        int rem = (int) checkSum % 10;
-        return rem == checkValue;
+        if (secondCount == 0) {
+            return;
+        }
+        first = copyWithoutSpaces(firstStart, firstEnd, firstCount);
+        second = copyWithoutSpaces(secondStart, secondEnd, secondCount);
+        MrzCorrector.correct(first, second);
+        // Built again from the lines when needed
+        mrz = null;
+    }
+
+    private char[] copyWithoutSpaces(int start, int end, int count) {
+        char[] line = new char[count];
+        int j = 0;
+        for (int i = start; i < end; i++) {
+            char c = mrz.charAt(i);
+            if (c != ' ') {
+                line[j++] = c;
+            }
+        }
+        return line;
     }
 
     /**
@@ -71,17 +71,19 @@ public class Mrz {
      * @return DocumentData object
      */
     public DocumentData getPrettyData() {
-        DocumentData data = new DocumentData();
-        if (mrz.startsWith("P")) {
-            data.setDocumentNumber(mrz.split("\n")[1].substring(PASSPORT_DOCNO_INDICES[0], PASSPORT_DOCNO_INDICES[1]));
-            data.setDateOfBirth(mrz.split("\n")[1].substring(PASSPORT_DOB_INDICES[0], PASSPORT_DOB_INDICES[1]));
-            data.setExpiryDate(mrz.split("\n")[1].substring(PASSPORT_EXP_INDICES[0],PASSPORT_EXP_INDICES[1]));
-        } else if (mrz.startsWith("I")) {
-            data.setDocumentNumber(mrz.split("\n")[0].substring(ID_DOCNO_INDICES[0],ID_DOCNO_INDICES[1]));
-            data.setDateOfBirth(mrz.split("\n")[1].substring(ID_DOB_INDICES[0],ID_DOB_INDICES[1]));
-            data.setExpiryDate(mrz.split("\n")[1].substring(ID_EXP_INDICES[0],ID_EXP_INDICES[1]));
+        MrzFormat format = getFormat();
+        if (format == null || first.length != format.getLineLength()) {
+            return new DocumentData();
         }
-        return data;
+        return format.getDocumentData(new char[][]{first, second});
+    }
+
+    /**
+     * @return the format of the MRZ by the length of its second line, or null when it has no
+     * second line or the length is not of any format.
+     */
+    public MrzFormat getFormat() {
+        return second == null ? null : MrzFormat.forLineLength(second.length);
     }
 
     /**
@@ -89,36 +91,33 @@ public class Mrz {
      * @return boolean whether the given input is a correct MRZ.
      */
     public boolean valid() {
-        try {
-            if (mrz.startsWith("P")) {
-                return checkPassportMRZ(mrz);
-            } else if (mrz.startsWith("I")){
-                return checkIDMRZ(mrz);
-            }
-        } catch (Exception ignored) {
-            // Probably an outOfBounds indicating the format was incorrect
-        }
-        return false;
+        return second != null && valid(first, second);
     }
 
-    private boolean checkIDMRZ(String mrz) {
-        boolean firstCheck = checkSum(mrz.split("\n")[0], new int[][]{ID_DOCNO_INDICES}, 14); //Checks document number
-        boolean secondCheck = checkSum(mrz.split("\n")[1], new int[][]{ID_DOB_INDICES}, 6); //Checks DoB
-        boolean thirdCheck = checkSum(mrz.split("\n")[1], new int[][]{ID_EXP_INDICES}, 14); //Checks expiration date
-        boolean fourthCheck = checkSum(mrz.replace("\n", ""), new int[][]{{5, 30}, {30, 37}, {38, 45}, {49, 59}}, 59); //Checks upper line from 6th digit + middle line
-        return firstCheck && secondCheck && thirdCheck && fourthCheck;
+    /**
+     * Checks if the MRZ data is valid
+     * @param mrz the first two lines of an MRZ, separated by a newline.
+     * @return boolean whether the given input is a correct MRZ.
+     */
+    static boolean valid(String mrz) {
+        String[] lines = mrz.split("\n");
+        return lines.length == 2 && !lines[0].isEmpty() && valid(lines[0].toCharArray(), lines[1].toCharArray());
     }
 
-    private boolean checkPassportMRZ(String mrz) {
-        boolean firstCheck = checkSum(mrz.split("\n")[1], new int[][]{PASSPORT_DOCNO_INDICES}, 9); // Checks document number
-        boolean secondCheck = checkSum(mrz.split("\n")[1], new int[][]{PASSPORT_DOB_INDICES}, 19);
-        boolean thirdCheck = checkSum(mrz.split("\n")[1], new int[][]{PASSPORT_EXP_INDICES}, 27);
-        boolean fourthCheck = checkSum(mrz.split("\n")[1], new int[][]{PASSPORT_PERSONAL_NUMBER_INDICES}, 42);
-        boolean fifthCheck = checkSum(mrz.split("\n")[1], new int[][]{{0, 10}, {13, 20}, {21, 43}}, 43);
-        return firstCheck && secondCheck && thirdCheck && fourthCheck && fifthCheck;
+    /**
+     * Checks if the first two lines of an MRZ are valid. The format follows from the length of
+     * the lines, so TD1, TD2 and TD3 documents of any type are checked.
+     */
+    static boolean valid(char[] first, char[] second) {
+        MrzFormat format = MrzFormat.forLineLength(second.length);
+        return format != null && first.length == format.getLineLength()
+                && format.isValid(new char[][]{first, second});
     }
 
     public String getText() {
+        if (mrz == null && second != null) {
+            mrz = new String(first) + "\n" + new String(second);
+        }
         return mrz;
     }
 }
@@ -0,0 +1,132 @@
+package com.digitalvotingpass.ocrscanner;
+
+import java.util.Arrays;
+
+/**
+ * Combines the readings of several frames into one MRZ. For every position in the lines the
+ * characters read there get a vote weighted by the confidence of Tesseract, so a character that
+ * is misread in one frame can be read right in the next frames. After every reading the best
+ * character of every position is checked with {@link Mrz#valid()}.
+ * Older votes fade, so a misread that got a high confidence does not stick.
+ * Shared by the OCR threads.
+ */
+public class MrzConsensus {
+    private static final String CHARACTERS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ<";
+    /**
+     * Weight left of the votes of earlier frames when a new frame is added.
+     */
+    private static final float DECAY = 0.8f;
+    private static final int MAX_LINE_LENGTH = 44;
+
+    private final float[][][] votes =
+            new float[MrzPreprocessor.MAX_LINES][MAX_LINE_LENGTH][CHARACTERS.length()];
+    private final int[] lengths = new int[MrzPreprocessor.MAX_LINES];
+    private final char[] text = new char[MrzPreprocessor.MAX_LINES * (MAX_LINE_LENGTH + 1)];
+    private long readings = 0;
+    private long resets = 0;
+
+    /**
+     * Add the votes of a reading and check the combined MRZ.
+     * Lines that are not as long as a TD1 (30), TD2 (36) or passport (44) line are left out,
+     * characters could be missing or added anywhere in them. When a line has another length than
+     * the same line of earlier readings, another document is scanned and the votes start over.
+     * @return the combined MRZ when it is valid, otherwise null.
+     */
+    public synchronized Mrz add(MrzReading reading) {
+        readings++;
+        for (int line = 0; line < reading.getLineCount(); line++) {
+            int length = reading.getLength(line);
+            if (isLineLength(length) && lengths[line] != 0 && lengths[line] != length) {
+                clear();
+                resets++;
+                break;
+            }
+        }
+        decay();
+        for (int line = 0; line < reading.getLineCount(); line++) {
+            int length = reading.getLength(line);
+            if (!isLineLength(length)) {
+                continue;
+            }
+            lengths[line] = length;
+            for (int position = 0; position < length; position++) {
+                int index = CHARACTERS.indexOf(reading.getCharacter(line, position));
+                if (index >= 0) {
+                    // Every read character counts a little, even when Tesseract is unsure
+                    votes[line][position][index] += Math.max(1f, reading.getConfidence(line, position));
+                }
+            }
+        }
+        Mrz mrz = new Mrz(getText());
+        return mrz.valid() ? mrz : null;
+    }
+
+    private static boolean isLineLength(int length) {
+        return length == 30 || length == 36 || length == 44;
+    }
+
+    private void decay() {
+        for (int line = 0; line < lengths.length; line++) {
+            for (int position = 0; position < lengths[line]; position++) {
+                float[] weights = votes[line][position];
+                for (int i = 0; i < weights.length; i++) {
+                    weights[i] *= DECAY;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the lines with the character that got the most votes on every position, a
+     * position without votes is filled with '?'.
+     */
+    public synchronized String getText() {
+        int count = 0;
+        for (int line = 0; line < lengths.length; line++) {
+            if (lengths[line] == 0) {
+                // The lines below can not be placed without this one
+                break;
+            }
+            for (int position = 0; position < lengths[line]; position++) {
+                float[] weights = votes[line][position];
+                int best = -1;
+                float bestWeight = 0;
+                for (int i = 0; i < weights.length; i++) {
+                    if (weights[i] > bestWeight) {
+                        best = i;
+                        bestWeight = weights[i];
+                    }
+                }
+                text[count++] = best < 0 ? '?' : CHARACTERS.charAt(best);
+            }
+            text[count++] = '\n';
+        }
+        return new String(text, 0, count);
+    }
+
+    /**
+     * Forget all votes, for instance when a new scan starts.
+     */
+    public synchronized void clear() {
+        for (int line = 0; line < lengths.length; line++) {
+            for (int position = 0; position < lengths[line]; position++) {
+                Arrays.fill(votes[line][position], 0f);
+            }
+            lengths[line] = 0;
+        }
+    }
+
+    /**
+     * @return the number of readings added.
+     */
+    public synchronized long getReadings() {
+        return readings;
+    }
+
+    /**
+     * @return the number of times the votes started over because the line lengths changed.
+     */
+    public synchronized long getResets() {
+        return resets;
+    }
+}
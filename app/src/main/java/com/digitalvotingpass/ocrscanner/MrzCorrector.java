@@ -0,0 +1,171 @@
+package com.digitalvotingpass.ocrscanner;
+
+/**
+ * Repairs OCR errors in an MRZ with the check digits. OCR-B characters that look alike (0 and O,
+ * 1 and I, 2 and Z, 5 and S, 6 and G, 8 and B) are often swapped. Dates and check digits are
+ * numeric and nationalities are alphabetic, so there the right character is known from its
+ * position. Document and personal numbers mix both; for those every look-alike is tried on
+ * every position until the check digits pass. A correction is only made when exactly one
+ * candidate passes, and no more than a fixed number of candidates is checked.
+ */
+public class MrzCorrector {
+    static final int MAX_CANDIDATES = 64;
+
+    private static final String LETTERS = "OQDILZSGB";
+    private static final String DIGITS = "000112568";
+
+    /**
+     * The look-alikes of every character, a letter has one digit and a digit can have several letters.
+     */
+    private static final String[] ALTERNATIVES = new String[128];
+
+    static {
+        for (int c = 0; c < ALTERNATIVES.length; c++) {
+            int letter = LETTERS.indexOf(c);
+            if (letter >= 0) {
+                ALTERNATIVES[c] = String.valueOf(DIGITS.charAt(letter));
+                continue;
+            }
+            StringBuilder letters = new StringBuilder();
+            for (int i = 0; i < DIGITS.length(); i++) {
+                if (DIGITS.charAt(i) == c) {
+                    letters.append(LETTERS.charAt(i));
+                }
+            }
+            ALTERNATIVES[c] = letters.toString();
+        }
+    }
+
+    private MrzCorrector() {
+    }
+
+    /**
+     * Correct the first two lines of an MRZ in place, the format follows from the length of the
+     * second line.
+     * @return true when a character was changed.
+     */
+    public static boolean correct(char[] first, char[] second) {
+        return correct(first, second, MAX_CANDIDATES);
+    }
+
+    static boolean correct(char[] first, char[] second, int maxCandidates) {
+        MrzFormat format = MrzFormat.forLineLength(second.length);
+        return format != null && correct(format, new char[][]{first, second}, maxCandidates);
+    }
+
+    /**
+     * Correct the lines of an MRZ in place. Only the lines that are there are corrected and the
+     * document number is only searched when all lines of the checks are there.
+     * @param lines the lines of the MRZ, lines that were not read are null.
+     * @return true when a character was changed.
+     */
+    public static boolean correct(MrzFormat format, char[][] lines) {
+        return correct(format, lines, MAX_CANDIDATES);
+    }
+
+    static boolean correct(MrzFormat format, char[][] lines, int maxCandidates) {
+        boolean changed = false;
+        for (int[] range : format.getNumericRanges()) {
+            if (hasLine(format, lines, range[0])) {
+                changed |= toDigits(lines[range[0]], range[1], range[2]);
+            }
+        }
+        for (int[] range : format.getAlphabeticRanges()) {
+            if (hasLine(format, lines, range[0])) {
+                changed |= toLetters(lines[range[0]], range[1], range[2]);
+            }
+        }
+        if (!format.hasCheckedLines(lines) || format.isValid(lines)) {
+            return changed;
+        }
+        int[] mixed = firstFailing(lines, format.getMixedFields());
+        if (mixed == null) {
+            return changed;
+        }
+        return search(format, lines, mixed, maxCandidates) || changed;
+    }
+
+    private static boolean hasLine(MrzFormat format, char[][] lines, int line) {
+        return line < lines.length && lines[line] != null && lines[line].length == format.getLineLength();
+    }
+
+    /**
+     * Try every look-alike on every position of the field and keep the only one that makes the
+     * MRZ pass all checks.
+     * Two errors in one field are not tried, too many candidates would pass the check digits by
+     * chance and the wrong one could be picked.
+     * @param field the field as {line, start, end, check digit}
+     * @return true when the field was corrected, false when no candidate or more than one passes,
+     * or when not all candidates could be checked.
+     */
+    private static boolean search(MrzFormat format, char[][] lines, int[] field, int maxCandidates) {
+        char[] line = lines[field[0]];
+        int foundIndex = -1;
+        char foundCharacter = 0;
+        int explored = 0;
+        for (int i = field[1]; i < field[2]; i++) {
+            char original = line[i];
+            String alternatives = alternatives(original);
+            for (int a = 0; a < alternatives.length(); a++) {
+                if (explored++ >= maxCandidates) {
+                    line[i] = original;
+                    return false;
+                }
+                line[i] = alternatives.charAt(a);
+                if (MrzFormat.checkField(lines, field) && format.isValid(lines)) {
+                    if (foundIndex >= 0) {
+                        // Ambiguous, better to scan another frame than to guess
+                        line[i] = original;
+                        return false;
+                    }
+                    foundIndex = i;
+                    foundCharacter = line[i];
+                }
+            }
+            line[i] = original;
+        }
+        if (foundIndex < 0) {
+            return false;
+        }
+        line[foundIndex] = foundCharacter;
+        return true;
+    }
+
+    private static String alternatives(char c) {
+        return c < ALTERNATIVES.length ? ALTERNATIVES[c] : "";
+    }
+
+    private static int[] firstFailing(char[][] lines, int[][] fields) {
+        for (int[] field : fields) {
+            if (!MrzFormat.checkField(lines, field)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private static boolean toDigits(char[] line, int start, int end) {
+        boolean changed = false;
+        for (int i = start; i < end; i++) {
+            int letter = LETTERS.indexOf(line[i]);
+            if (letter >= 0) {
+                line[i] = DIGITS.charAt(letter);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean toLetters(char[] line, int start, int end) {
+        boolean changed = false;
+        for (int i = start; i < end; i++) {
+            int digit = DIGITS.indexOf(line[i]);
+            if (digit >= 0) {
+                // The first letter that looks like the digit
+                line[i] = LETTERS.charAt(digit);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
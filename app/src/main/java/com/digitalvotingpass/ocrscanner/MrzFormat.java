@@ -0,0 +1,219 @@
+package com.digitalvotingpass.ocrscanner;
+
+import com.digitalvotingpass.digitalvotingpass.DocumentData;
+
+/**
+ * The machine readable zone formats of ICAO 9303: TD1 (ID cards, 3 lines of 30), TD2 (2 lines of
+ * 36) and TD3 (passports, 2 lines of 44). Fields are given as {line, start, end, check digit} and
+ * ranges as {line, start, end}, counting from 0.
+ */
+public enum MrzFormat {
+    TD1(3, 30,
+            new int[]{0, 5, 14, 14}, new int[]{1, 0, 6, 6}, new int[]{1, 8, 14, 14}, null,
+            new int[][]{{0, 5, 30}, {1, 0, 7}, {1, 8, 15}, {1, 18, 29}}, new int[]{1, 29},
+            new int[][]{{0, 2, 5}, {1, 15, 18}}),
+    TD2(2, 36,
+            new int[]{1, 0, 9, 9}, new int[]{1, 13, 19, 19}, new int[]{1, 21, 27, 27}, null,
+            new int[][]{{1, 0, 10}, {1, 13, 20}, {1, 21, 35}}, new int[]{1, 35},
+            new int[][]{{0, 2, 5}, {1, 10, 13}}),
+    TD3(2, 44,
+            new int[]{1, 0, 9, 9}, new int[]{1, 13, 19, 19}, new int[]{1, 21, 27, 27}, new int[]{1, 28, 42, 42},
+            new int[][]{{1, 0, 10}, {1, 13, 20}, {1, 21, 43}}, new int[]{1, 43},
+            new int[][]{{0, 2, 5}, {1, 10, 13}});
+
+    private static final int[] WEIGHTS = {7, 3, 1};
+
+    /**
+     * Value of every character in a check digit calculation, -1 for characters that are not
+     * allowed in an MRZ.
+     */
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        for (int c = 0; c < VALUES.length; c++) {
+            if (c >= '0' && c <= '9') {
+                VALUES[c] = (byte) (c - '0');
+            } else if (c >= 'A' && c <= 'Z') {
+                VALUES[c] = (byte) (c - 55);
+            } else if (c == '<') {
+                VALUES[c] = 0;
+            } else {
+                VALUES[c] = -1;
+            }
+        }
+    }
+
+    private final int lineCount;
+    private final int lineLength;
+    private final int[] documentNumber;
+    private final int[] dateOfBirth;
+    private final int[] expiryDate;
+    private final int[] personalNumber;
+    private final int[][] composite;
+    private final int[] compositeCheck;
+    private final int[][] alphabetic;
+    private final int[][] numeric;
+    private final int[][] mixed;
+
+    MrzFormat(int lineCount, int lineLength, int[] documentNumber, int[] dateOfBirth, int[] expiryDate,
+              int[] personalNumber, int[][] composite, int[] compositeCheck, int[][] alphabetic) {
+        this.lineCount = lineCount;
+        this.lineLength = lineLength;
+        this.documentNumber = documentNumber;
+        this.dateOfBirth = dateOfBirth;
+        this.expiryDate = expiryDate;
+        this.personalNumber = personalNumber;
+        this.composite = composite;
+        this.compositeCheck = compositeCheck;
+        this.alphabetic = alphabetic;
+        // Dates and check digits only hold digits
+        int[] documentNumberCheck = {documentNumber[0], documentNumber[3], documentNumber[3] + 1};
+        int[] birth = {dateOfBirth[0], dateOfBirth[1], dateOfBirth[3] + 1};
+        int[] expiry = {expiryDate[0], expiryDate[1], expiryDate[3] + 1};
+        int[] compositeDigit = {compositeCheck[0], compositeCheck[1], compositeCheck[1] + 1};
+        if (personalNumber == null) {
+            numeric = new int[][]{documentNumberCheck, birth, expiry, compositeDigit};
+            mixed = new int[][]{documentNumber};
+        } else {
+            int[] personalNumberCheck = {personalNumber[0], personalNumber[3], personalNumber[3] + 1};
+            numeric = new int[][]{documentNumberCheck, birth, expiry, personalNumberCheck, compositeDigit};
+            mixed = new int[][]{documentNumber, personalNumber};
+        }
+    }
+
+    /**
+     * @return the format with lines of this length, or null when no format has.
+     */
+    public static MrzFormat forLineLength(int length) {
+        for (MrzFormat format : values()) {
+            if (format.lineLength == length) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public int getLineLength() {
+        return lineLength;
+    }
+
+    /**
+     * @return whether the document number, dates and composite check digit can be checked with
+     * the lines that are there, a line is there when it is not null.
+     */
+    public boolean hasCheckedLines(char[][] lines) {
+        for (int[] range : composite) {
+            if (!hasLine(lines, range[0])) {
+                return false;
+            }
+        }
+        return hasLine(lines, documentNumber[0]) && hasLine(lines, dateOfBirth[0]) && hasLine(lines, expiryDate[0]);
+    }
+
+    private boolean hasLine(char[][] lines, int line) {
+        return line < lines.length && lines[line] != null && lines[line].length == lineLength;
+    }
+
+    /**
+     * Checks the check digits of the document number, dates, personal number and the composite
+     * check digit.
+     * @param lines the lines of the MRZ, lines that are not needed for the checks can be null.
+     */
+    public boolean isValid(char[][] lines) {
+        if (!hasCheckedLines(lines)) {
+            return false;
+        }
+        return checkField(lines, documentNumber)
+                && checkField(lines, dateOfBirth)
+                && checkField(lines, expiryDate)
+                && (personalNumber == null || checkField(lines, personalNumber))
+                && checkComposite(lines);
+    }
+
+    /**
+     * @return the document number, date of birth and expiry date as used for BAC.
+     */
+    public DocumentData getDocumentData(char[][] lines) {
+        DocumentData data = new DocumentData();
+        data.setDocumentNumber(substring(lines, documentNumber));
+        data.setDateOfBirth(substring(lines, dateOfBirth));
+        data.setExpiryDate(substring(lines, expiryDate));
+        return data;
+    }
+
+    private static String substring(char[][] lines, int[] field) {
+        return new String(lines[field[0]], field[1], field[2] - field[1]);
+    }
+
+    static boolean checkField(char[][] lines, int[] field) {
+        return checkSum(lines[field[0]], field[1], field[2], lines[field[0]][field[3]]);
+    }
+
+    private boolean checkComposite(char[][] lines) {
+        int count = 0;
+        int sum = 0;
+        for (int[] range : composite) {
+            char[] line = lines[range[0]];
+            for (int i = range[1]; i < range[2]; i++) {
+                int value = value(line[i]);
+                if (value < 0) {
+                    return false; //illegal character
+                }
+                sum += value * WEIGHTS[count % 3];
+                count++;
+            }
+        }
+        return check(sum, lines[compositeCheck[0]][compositeCheck[1]]);
+    }
+
+    /**
+     * Performs checksum calculation of the line's chars from start til end.
+     * @param checkDigit the check digit the sum should match
+     * @return boolean whether check was successful
+     */
+    static boolean checkSum(char[] line, int start, int end, char checkDigit) {
+        int sum = 0;
+        for (int i = start; i < end; i++) {
+            int value = value(line[i]);
+            if (value < 0) {
+                return false; //illegal character
+            }
+            sum += value * WEIGHTS[(i - start) % 3];
+        }
+        return check(sum, checkDigit);
+    }
+
+    private static int value(char c) {
+        return c < VALUES.length ? VALUES[c] : -1;
+    }
+
+    private static boolean check(int sum, char checkDigit) {
+        return checkDigit >= '0' && checkDigit <= '9' && sum % 10 == checkDigit - '0';
+    }
+
+    /**
+     * @return the ranges that only hold digits: dates and check digits.
+     */
+    int[][] getNumericRanges() {
+        return numeric;
+    }
+
+    /**
+     * @return the ranges that only hold letters: issuing state and nationality.
+     */
+    int[][] getAlphabeticRanges() {
+        return alphabetic;
+    }
+
+    /**
+     * @return the fields with letters and digits that have a check digit: document number and
+     * personal number.
+     */
+    int[][] getMixedFields() {
+        return mixed;
+    }
+}
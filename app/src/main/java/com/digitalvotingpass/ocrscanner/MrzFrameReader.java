@@ -0,0 +1,91 @@
+package com.digitalvotingpass.ocrscanner;
+
+import com.digitalvotingpass.digitalvotingpass.DocumentData;
+
+/**
+ * Reads the MRZ of a greyscale frame: the frame is thresholded, the MRZ lines are found and
+ * recognized one by one, in the order of the {@link MrzParser}, until the lines read so far are
+ * a valid MRZ. Reused for every frame of one OCR thread.
+ */
+public class MrzFrameReader {
+    private final MrzLineRecognizer recognizer;
+    private final MrzPreprocessor preprocessor = new MrzPreprocessor();
+    private final MrzReading reading = new MrzReading();
+    private final MrzParser parser = new MrzParser();
+    private int lineCount = 0;
+    private long framesWithoutLines = 0;
+    private long linesRecognized = 0;
+    private long linesSkipped = 0;
+
+    public MrzFrameReader(MrzLineRecognizer recognizer) {
+        this.recognizer = recognizer;
+    }
+
+    /**
+     * @return the document data when the frame holds a valid MRZ, otherwise null. The recognized
+     * lines are left in the reading, it is empty when the frame has no MRZ lines or recognition
+     * was stopped.
+     */
+    public DocumentData read(LuminanceFrame frame) {
+        reading.clear();
+        lineCount = preprocessor.process(frame);
+        // An MRZ has at least 2 lines
+        if (lineCount < 2) {
+            framesWithoutLines++;
+            return null;
+        }
+        recognizer.setImage(preprocessor.getBinary(), frame.getWidth(), frame.getHeight(),
+                preprocessor.getBytesPerLine());
+        parser.start(lineCount);
+        int recognized = 0;
+        for (int line = parser.nextLine(); line >= 0; line = parser.nextLine()) {
+            reading.startLine(line);
+            if (!recognizer.recognizeLine(preprocessor.getLineTop(line), preprocessor.getLineBottom(line), reading)) {
+                reading.clear();
+                return null;
+            }
+            parser.addLine(reading, line);
+            recognized++;
+        }
+        linesRecognized += recognized;
+        linesSkipped += lineCount - recognized;
+        return parser.getDocumentData();
+    }
+
+    /**
+     * @return the lines recognized in the last frame.
+     */
+    public MrzReading getReading() {
+        return reading;
+    }
+
+    /**
+     * @return the number of MRZ lines found in the last frame, no lines are recognized in a frame
+     * with less than 2.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return the format of the last frame, or null when no line had the length of a format.
+     */
+    public MrzFormat getFormat() {
+        return parser.getFormat();
+    }
+
+    public long getFramesWithoutLines() {
+        return framesWithoutLines;
+    }
+
+    public long getLinesRecognized() {
+        return linesRecognized;
+    }
+
+    /**
+     * @return the number of MRZ lines that were found but not needed to read the MRZ.
+     */
+    public long getLinesSkipped() {
+        return linesSkipped;
+    }
+}
@@ -0,0 +1,21 @@
+package com.digitalvotingpass.ocrscanner;
+
+/**
+ * Recognizes the characters of a single MRZ line in a thresholded frame. Implemented with
+ * tess-two in the app and with any other Tesseract binding elsewhere, so the rest of the scan
+ * can run off the device.
+ */
+public interface MrzLineRecognizer {
+    /**
+     * Set the image the lines are recognized in.
+     * @param binary 1 bit per pixel, the most significant bit first, 1 is white.
+     */
+    void setImage(byte[] binary, int width, int height, int bytesPerLine);
+
+    /**
+     * Recognize the line between top and bottom and add its characters with their confidence to
+     * the line of the reading that was started last.
+     * @return false when recognition was stopped before the line was recognized.
+     */
+    boolean recognizeLine(int top, int bottom, MrzReading reading);
+}
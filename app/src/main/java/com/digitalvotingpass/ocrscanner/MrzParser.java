@@ -0,0 +1,104 @@
+package com.digitalvotingpass.ocrscanner;
+
+import com.digitalvotingpass.digitalvotingpass.DocumentData;
+
+import java.util.Arrays;
+
+/**
+ * Checks the MRZ of a frame line by line while its lines are recognized, so the document data
+ * for BAC is known as soon as the lines with the check digits are read.
+ * On a passport (TD3) or TD2 document the second line holds the document number, the dates and
+ * all check digits, on an ID card (TD1) the first two lines do. The second line is recognized
+ * first, so a passport can be valid after one line, and the names on the third line of an ID
+ * card are never recognized. The format follows from the length of the lines that were read.
+ * Reused for every frame.
+ */
+public class MrzParser {
+    /**
+     * The order in which the lines are recognized, lines that are not in it are not needed.
+     */
+    private static final int[] ORDER = {1, 0};
+
+    private final char[][] storage = new char[MrzPreprocessor.MAX_LINES][];
+    /**
+     * The lines that were read with the length of the format, the others are null.
+     */
+    private final char[][] lines = new char[MrzPreprocessor.MAX_LINES][];
+    private int lineCount;
+    private int next;
+    private MrzFormat format;
+    private boolean valid;
+
+    /**
+     * Start parsing a frame.
+     * @param lineCount the number of MRZ lines found in the frame.
+     */
+    public void start(int lineCount) {
+        this.lineCount = Math.min(lineCount, MrzPreprocessor.MAX_LINES);
+        next = 0;
+        format = null;
+        valid = false;
+        Arrays.fill(lines, null);
+    }
+
+    /**
+     * @return the index of the line to recognize next counting from the top, or -1 when the
+     * MRZ is valid or all needed lines were read.
+     */
+    public int nextLine() {
+        while (!valid && next < ORDER.length) {
+            int line = ORDER[next++];
+            if (line < lineCount) {
+                return line;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Add a recognized line of the reading and check all lines read so far. Characters that the
+     * check digits point out as misread are corrected in the parsed lines, not in the reading.
+     * @param line the index of the line in the reading.
+     * @return whether the lines read so far are a valid MRZ.
+     */
+    public boolean addLine(MrzReading reading, int line) {
+        int length = reading.getLength(line);
+        if (format == null) {
+            format = MrzFormat.forLineLength(length);
+        }
+        if (format == null || length != format.getLineLength() || line >= lines.length) {
+            return valid;
+        }
+        if (storage[line] == null || storage[line].length != length) {
+            storage[line] = new char[length];
+        }
+        for (int i = 0; i < length; i++) {
+            storage[line][i] = reading.getCharacter(line, i);
+        }
+        lines[line] = storage[line];
+        if (format.hasCheckedLines(lines)) {
+            MrzCorrector.correct(format, lines);
+            valid = format.isValid(lines);
+        }
+        return valid;
+    }
+
+    /**
+     * @return the format of the lines read so far, or null when no line had the length of a format.
+     */
+    public MrzFormat getFormat() {
+        return format;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * @return the document number, date of birth and expiry date when the MRZ is valid,
+     * otherwise null.
+     */
+    public DocumentData getDocumentData() {
+        return valid ? format.getDocumentData(lines) : null;
+    }
+}
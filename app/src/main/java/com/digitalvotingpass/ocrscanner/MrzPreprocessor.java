@@ -0,0 +1,196 @@
+package com.digitalvotingpass.ocrscanner;
+
+/**
+ * Prepares the scan segment for Tesseract. The frame is thresholded to a 1 bit image with an
+ * adaptive threshold, which copes with the glare and the printed background of passports, and
+ * the rows of the MRZ text lines are located with a horizontal projection of the black pixels.
+ * Tesseract can then recognize every line on its own instead of analysing the layout.
+ * The buffers are reused for every frame. Not thread safe, every OCR thread needs its own.
+ */
+public class MrzPreprocessor {
+    /**
+     * A TD1 document has 3 lines, passports (TD3) have 2.
+     */
+    public static final int MAX_LINES = 3;
+
+    /**
+     * A pixel is black when it is this many percent darker than the mean of its surroundings.
+     */
+    private static final int THRESHOLD_PERCENT = 15;
+    private static final int MIN_LINE_HEIGHT = 4;
+
+    private byte[] binary = new byte[0];
+    private int bytesPerLine;
+    private int[] integral = new int[0];
+    private int[] ink = new int[0];
+    private int[] runTops = new int[0];
+    private int[] runBottoms = new int[0];
+    private final int[] lineTops = new int[MAX_LINES];
+    private final int[] lineBottoms = new int[MAX_LINES];
+    private int lineCount;
+
+    /**
+     * Threshold the frame and find the MRZ lines in it.
+     * @return the number of lines found.
+     */
+    public int process(LuminanceFrame frame) {
+        binarize(frame);
+        return findLines(frame.getWidth(), frame.getHeight());
+    }
+
+    /**
+     * Threshold every pixel against the mean of the square around it (Bradley's method), using an
+     * integral image so the cost does not depend on the size of the square.
+     * The result is packed 8 pixels per byte, the first pixel in the highest bit, 1 for white, as
+     * Tesseract expects for binary images.
+     */
+    void binarize(LuminanceFrame frame) {
+        byte[] data = frame.getData();
+        int width = frame.getWidth();
+        int height = frame.getHeight();
+        int stride = width + 1;
+        if (integral.length < stride * (height + 1)) {
+            integral = new int[stride * (height + 1)];
+        }
+        for (int y = 0; y < height; y++) {
+            int rowSum = 0;
+            int in = y * width;
+            int out = (y + 1) * stride + 1;
+            for (int x = 0; x < width; x++) {
+                rowSum += data[in + x] & 0xFF;
+                integral[out + x] = integral[out + x - stride] + rowSum;
+            }
+        }
+
+        bytesPerLine = (width + 7) / 8;
+        if (binary.length < bytesPerLine * height) {
+            binary = new byte[bytesPerLine * height];
+        }
+        if (ink.length < height) {
+            ink = new int[height];
+        }
+        // Larger than the strokes of the characters, so their inside is compared to the background
+        int radius = Math.max(8, width / 32);
+        for (int y = 0; y < height; y++) {
+            int top = Math.max(0, y - radius);
+            int bottom = Math.min(height, y + radius + 1);
+            int rowInk = 0;
+            int packed = 0;
+            int out = y * bytesPerLine;
+            for (int x = 0; x < width; x++) {
+                int left = Math.max(0, x - radius);
+                int right = Math.min(width, x + radius + 1);
+                int count = (right - left) * (bottom - top);
+                int sum = integral[bottom * stride + right] - integral[top * stride + right]
+                        - integral[bottom * stride + left] + integral[top * stride + left];
+                boolean black = (data[y * width + x] & 0xFF) * count * 100L
+                        <= sum * (long) (100 - THRESHOLD_PERCENT);
+                packed <<= 1;
+                if (black) {
+                    rowInk++;
+                } else {
+                    packed |= 1;
+                }
+                if ((x & 7) == 7) {
+                    binary[out++] = (byte) packed;
+                    packed = 0;
+                }
+            }
+            if ((width & 7) != 0) {
+                // Pad the last byte with white
+                int pad = 8 - (width & 7);
+                binary[out] = (byte) ((packed << pad) | ((1 << pad) - 1));
+            }
+            ink[y] = rowInk;
+        }
+    }
+
+    /**
+     * Find runs of rows with enough black pixels and keep the lowest runs of about the same height,
+     * the MRZ is at the bottom of the document.
+     */
+    int findLines(int width, int height) {
+        if (runTops.length < height) {
+            runTops = new int[height];
+            runBottoms = new int[height];
+        }
+        int minInk = Math.max(1, width / 20);
+        int runs = 0;
+        int y = 0;
+        while (y < height) {
+            if (ink[y] < minInk) {
+                y++;
+                continue;
+            }
+            int top = y;
+            // A single row without ink does not end a line
+            while (y < height && (ink[y] >= minInk || (y + 1 < height && ink[y + 1] >= minInk))) {
+                y++;
+            }
+            if (y - top >= MIN_LINE_HEIGHT) {
+                runTops[runs] = top;
+                runBottoms[runs] = y;
+                runs++;
+            }
+        }
+
+        lineCount = 0;
+        if (runs == 0) {
+            return 0;
+        }
+        int lineHeight = runBottoms[runs - 1] - runTops[runs - 1];
+        for (int i = runs - 1; i >= 0 && lineCount < MAX_LINES; i--) {
+            int runHeight = runBottoms[i] - runTops[i];
+            if (runHeight * 2 < lineHeight || runHeight > lineHeight * 2) {
+                break;
+            }
+            lineCount++;
+        }
+        // Pad the lines a bit, Tesseract needs some background around the characters
+        int first = runs - lineCount;
+        for (int i = 0; i < lineCount; i++) {
+            int run = first + i;
+            int pad = (runBottoms[run] - runTops[run]) / 4;
+            int above = run == 0 ? 0 : runBottoms[run - 1];
+            int below = run == runs - 1 ? height : runTops[run + 1];
+            lineTops[i] = Math.max(above, runTops[run] - pad);
+            lineBottoms[i] = Math.min(below, runBottoms[run] + pad);
+        }
+        return lineCount;
+    }
+
+    /**
+     * @return the thresholded frame, the buffer may be larger than needed.
+     */
+    public byte[] getBinary() {
+        return binary;
+    }
+
+    /**
+     * @return the number of bytes per row of the thresholded frame.
+     */
+    public int getBytesPerLine() {
+        return bytesPerLine;
+    }
+
+    /**
+     * @return the number of lines found in the last frame, from top to bottom.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * @return the first row of the line.
+     */
+    public int getLineTop(int line) {
+        return lineTops[line];
+    }
+
+    /**
+     * @return the row after the last row of the line.
+     */
+    public int getLineBottom(int line) {
+        return lineBottoms[line];
+    }
+}
@@ -0,0 +1,94 @@
+package com.digitalvotingpass.ocrscanner;
+
+import java.util.Arrays;
+
+/**
+ * The characters Tesseract recognized in the MRZ lines of one frame, with the confidence of
+ * every character. Reused for every frame, characters beyond {@link #MAX_LENGTH} are counted in
+ * the length of the line but not stored.
+ */
+public class MrzReading {
+    /**
+     * Longer than the 44 characters of a passport line, so too long lines can be recognized.
+     */
+    public static final int MAX_LENGTH = 64;
+
+    private final char[][] characters = new char[MrzPreprocessor.MAX_LINES][MAX_LENGTH];
+    private final float[][] confidences = new float[MrzPreprocessor.MAX_LINES][MAX_LENGTH];
+    private final int[] lengths = new int[MrzPreprocessor.MAX_LINES];
+    private int lineCount = 0;
+    private int line = -1;
+
+    /**
+     * Remove all lines.
+     */
+    public void clear() {
+        Arrays.fill(lengths, 0);
+        lineCount = 0;
+        line = -1;
+    }
+
+    /**
+     * Start a new line below the last line, lines beyond {@link MrzPreprocessor#MAX_LINES} are
+     * ignored.
+     */
+    public void addLine() {
+        startLine(lineCount);
+    }
+
+    /**
+     * Start reading the line with this index, lines do not have to be read from top to bottom.
+     * Lines above it that are not read are empty.
+     */
+    public void startLine(int line) {
+        this.line = line;
+        if (line < MrzPreprocessor.MAX_LINES) {
+            lengths[line] = 0;
+        }
+        lineCount = Math.max(lineCount, line + 1);
+    }
+
+    /**
+     * Add a character to the line that was started last. Spaces are left out, they are not part
+     * of an MRZ.
+     * @param confidence the confidence of Tesseract in the character, from 0 to 100.
+     */
+    public void addCharacter(char character, float confidence) {
+        if (character == ' ' || line < 0 || line >= MrzPreprocessor.MAX_LINES) {
+            return;
+        }
+        int position = lengths[line]++;
+        if (position < MAX_LENGTH) {
+            characters[line][position] = character;
+            confidences[line][position] = confidence;
+        }
+    }
+
+    public int getLineCount() {
+        return Math.min(lineCount, MrzPreprocessor.MAX_LINES);
+    }
+
+    public int getLength(int line) {
+        return lengths[line];
+    }
+
+    public char getCharacter(int line, int position) {
+        return characters[line][position];
+    }
+
+    public float getConfidence(int line, int position) {
+        return confidences[line][position];
+    }
+
+    /**
+     * @return the lines separated by newlines, as read by {@link Mrz}.
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (int line = 0; line < getLineCount(); line++) {
+            text.append(characters[line], 0, Math.min(lengths[line], MAX_LENGTH)).append('\n');
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,100 @@
+package com.digitalvotingpass.ocrscanner;
+
+/**
+ * Time budget for recognizing a single frame. The OCR thread calls {@link #start()} before
+ * recognition and {@link #finish()} after it. The progress monitor of Tesseract calls
+ * {@link #checkExpired()} and a timer calls {@link #cancel()}; both return true exactly once per
+ * frame, when recognition should be stopped. Frames that were stopped are counted as abandoned.
+ */
+public class ScanBudget {
+    private final long budgetMillis;
+    private long deadline;
+    private boolean running = false;
+    private boolean cancelled = false;
+    private long completed = 0;
+    private long abandoned = 0;
+
+    /**
+     * @param budgetMillis the time recognition of a frame is allowed to take.
+     */
+    public ScanBudget(long budgetMillis) {
+        if (budgetMillis < 1)
+            throw new IllegalArgumentException("Budget should be at least 1 ms");
+        this.budgetMillis = budgetMillis;
+    }
+
+    /**
+     * Start the budget of a new frame.
+     */
+    public synchronized void start() {
+        deadline = now() + budgetMillis;
+        running = true;
+        cancelled = false;
+    }
+
+    /**
+     * Cancel the frame when its budget has run out.
+     * @return true when the frame has just been cancelled and recognition should be stopped.
+     */
+    public synchronized boolean checkExpired() {
+        return now() >= deadline && cancel();
+    }
+
+    /**
+     * Cancel the frame that is being recognized.
+     * @return true when the frame has just been cancelled and recognition should be stopped.
+     */
+    public synchronized boolean cancel() {
+        if (!running || cancelled) {
+            return false;
+        }
+        cancelled = true;
+        return true;
+    }
+
+    /**
+     * @return true when a frame was started and has not been finished yet.
+     */
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return true when the current frame has been cancelled.
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * End the budget of the current frame.
+     * @return true when recognition completed, false when the frame was abandoned.
+     */
+    public synchronized boolean finish() {
+        running = false;
+        if (cancelled) {
+            abandoned++;
+            return false;
+        }
+        completed++;
+        return true;
+    }
+
+    /**
+     * @return the number of frames recognized within the budget.
+     */
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * @return the number of frames that were stopped before recognition completed.
+     */
+    public synchronized long getAbandoned() {
+        return abandoned;
+    }
+
+    long now() {
+        return System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,76 @@
+package com.digitalvotingpass.ocrscanner;
+
+import android.os.Debug;
+
+import com.googlecode.tesseract.android.TessBaseAPI;
+
+import java.io.IOException;
+
+/**
+ * A Tesseract engine with the OCR model loaded, handed out by the {@link TesseractEngineProvider}.
+ * The progress notifier of a TessBaseAPI is fixed when it is created, so progress is passed on
+ * to the notifier of the OCR thread that uses the engine at the moment.
+ */
+public class TesseractEngine {
+    private final TessBaseAPI api;
+    private final long initMillis;
+    private final long nativeBytes;
+    private volatile TessBaseAPI.ProgressNotifier progressNotifier;
+
+    /**
+     * Load the model.
+     * @param dataPath the folder with the tessdata folder that holds the traineddata file
+     * @throws IOException when the model could not be loaded
+     */
+    TesseractEngine(String dataPath, String language, String whitelist) throws IOException {
+        long nativeBefore = Debug.getNativeHeapAllocatedSize();
+        long start = System.currentTimeMillis();
+        api = new TessBaseAPI(new TessBaseAPI.ProgressNotifier() {
+            @Override
+            public void onProgressValues(TessBaseAPI.ProgressValues progressValues) {
+                TessBaseAPI.ProgressNotifier notifier = progressNotifier;
+                if (notifier != null) {
+                    notifier.onProgressValues(progressValues);
+                }
+            }
+        });
+        if (!api.init(dataPath, language)) {
+            api.end();
+            throw new IOException("Could not load " + language + " from " + dataPath);
+        }
+        api.setVariable("tessedit_char_whitelist", whitelist);
+        initMillis = System.currentTimeMillis() - start;
+        nativeBytes = Debug.getNativeHeapAllocatedSize() - nativeBefore;
+    }
+
+    public TessBaseAPI getApi() {
+        return api;
+    }
+
+    /**
+     * Set the notifier that gets the progress of recognition, null for none.
+     */
+    public void setProgressNotifier(TessBaseAPI.ProgressNotifier progressNotifier) {
+        this.progressNotifier = progressNotifier;
+    }
+
+    /**
+     * @return the time it took to load the model.
+     */
+    public long getInitMillis() {
+        return initMillis;
+    }
+
+    /**
+     * @return the growth of the native heap while the model was loaded, other threads may have
+     * allocated native memory at the same time.
+     */
+    public long getNativeBytes() {
+        return nativeBytes;
+    }
+
+    void end() {
+        progressNotifier = null;
+        api.end();
+    }
+}
@@ -0,0 +1,208 @@
+package com.digitalvotingpass.ocrscanner;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Environment;
+import android.os.Process;
+import android.util.Log;
+
+import com.digitalvotingpass.utilities.AssetExtractor;
+import com.digitalvotingpass.utilities.Util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Loads the OCR model and hands out Tesseract engines to the OCR threads.
+ * Tesseract 3.05, which tess-two wraps, can not share a loaded model between engines: every
+ * TessBaseAPI reads the traineddata into its own native memory, and there is no way to load it
+ * memory-mapped. So the provider does the next best thing: the model file is made ready once for
+ * all threads, and an engine is not ended when its thread stops but kept for the next thread, so
+ * every engine is only initialized once per process. The init time and native memory of every
+ * engine are measured and logged with the number of engines.
+ * The engines are loaded in the background at app start with {@link #prewarm()} and stay loaded
+ * between voters, until the system runs low on memory.
+ */
+public class TesseractEngineProvider {
+    private static final String TAG = "TesseractEngines";
+    private static final String TRAINED_DATA = "ocrb.traineddata";
+    private static final String FOLDER_TESSERACT_DATA = "tessdata";
+    private static final String TRAINED_DATA_EXTENSION = ".traineddata";
+    private static final String MRZ_CHARACTERS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ<";
+
+    private static TesseractEngineProvider instance;
+
+    private final Context context;
+    private final Deque<TesseractEngine> idle = new ArrayDeque<>();
+    private boolean modelReady = false;
+    private int engines = 0;
+    private long totalInitMillis = 0;
+    private long totalNativeBytes = 0;
+
+    private TesseractEngineProvider(Context context) {
+        this.context = context;
+        context.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                if (level >= TRIM_MEMORY_MODERATE || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+                    Log.i(TAG, "Ending idle engines, trim memory level " + level);
+                    endIdle();
+                }
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                endIdle();
+            }
+        });
+    }
+
+    public static synchronized TesseractEngineProvider getInstance(Context ctx) {
+        if (instance == null) {
+            instance = new TesseractEngineProvider(ctx.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * @return the number of OCR threads to scan with, one core is left for the camera preview
+     * and the UI.
+     */
+    public static int getWorkerCount() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+
+    /**
+     * Load an engine for every OCR thread on a background thread, so scanning can start without
+     * waiting for the model. Engines that are already loaded count, so this can be called again.
+     * Needs permission to write to external storage, the model is copied there.
+     */
+    public void prewarm() {
+        final int count = getWorkerCount();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                long start = System.currentTimeMillis();
+                try {
+                    while (true) {
+                        synchronized (TesseractEngineProvider.this) {
+                            if (engines >= count) {
+                                break;
+                            }
+                        }
+                        release(load());
+                    }
+                    Log.i(TAG, "Prewarmed " + count + " engines in " + (System.currentTimeMillis() - start) + " ms");
+                } catch (IOException e) {
+                    // The OCR threads try again when they start
+                    Log.e(TAG, "Prewarming failed: " + e.getMessage());
+                }
+            }
+        }, "TesseractPrewarm");
+        thread.start();
+    }
+
+    /**
+     * Take an idle engine, or load a new one when none is idle. Loading takes place on the
+     * calling thread, so several threads can load an engine at the same time.
+     * @throws IOException when the model could not be copied or loaded
+     */
+    public TesseractEngine acquire() throws IOException {
+        synchronized (this) {
+            TesseractEngine engine = idle.pollFirst();
+            if (engine != null) {
+                return engine;
+            }
+        }
+        return load();
+    }
+
+    private TesseractEngine load() throws IOException {
+        String path = prepareModel();
+        TesseractEngine engine = new TesseractEngine(path, TRAINED_DATA.replace(TRAINED_DATA_EXTENSION, ""),
+                MRZ_CHARACTERS);
+        synchronized (this) {
+            engines++;
+            totalInitMillis += engine.getInitMillis();
+            totalNativeBytes += engine.getNativeBytes();
+            Log.i(TAG, "Engine " + engines + " loaded in " + engine.getInitMillis() + " ms, native heap +"
+                    + engine.getNativeBytes() / 1024 + " KiB; engines: " + engines + ", native heap total +"
+                    + totalNativeBytes / 1024 + " KiB, average load " + totalInitMillis / engines + " ms");
+        }
+        return engine;
+    }
+
+    /**
+     * Give back an engine that is no longer used, it is kept for the next OCR thread. More idle
+     * engines than OCR threads are not kept, those were loaded while the engines of an earlier
+     * scan were still in use.
+     */
+    public synchronized void release(TesseractEngine engine) {
+        engine.setProgressNotifier(null);
+        if (idle.size() >= getWorkerCount()) {
+            end(engine);
+            return;
+        }
+        idle.addFirst(engine);
+    }
+
+    /**
+     * End the engines that are not used to free their memory, they are loaded again when needed.
+     */
+    public synchronized void endIdle() {
+        for (TesseractEngine engine : idle) {
+            end(engine);
+        }
+        idle.clear();
+    }
+
+    private void end(TesseractEngine engine) {
+        engine.end();
+        engines--;
+        totalInitMillis -= engine.getInitMillis();
+        totalNativeBytes -= engine.getNativeBytes();
+    }
+
+    /**
+     * Extract the traineddata from the assets to storage when it is not there intact, Tesseract
+     * can only read it from a file. Checked once per process against the manifest in the assets,
+     * so a file left incomplete by a crash is replaced.
+     * @return the folder that holds the tessdata folder
+     */
+    private synchronized String prepareModel() throws IOException {
+        String path = Environment.getExternalStorageDirectory() + "/" + Util.FOLDER_DIGITAL_VOTING_PASS + "/";
+        if (!modelReady) {
+            File trainedDataFile = new File(path, FOLDER_TESSERACT_DATA + "/" + TRAINED_DATA);
+            AssetExtractor extractor = new AssetExtractor(context.getAssets().open(AssetExtractor.MANIFEST));
+            if (!extractor.isIntact(TRAINED_DATA, trainedDataFile)) {
+                Log.i(TAG, "No intact trained data found, extracting from assets..");
+                long start = System.currentTimeMillis();
+                extractor.extract(TRAINED_DATA, context.getAssets().open(TRAINED_DATA), trainedDataFile);
+                Log.i(TAG, "Trained data extracted in " + (System.currentTimeMillis() - start) + " ms");
+            } else {
+                Log.i(TAG, "Existing trained data found");
+            }
+            modelReady = true;
+        }
+        return path;
+    }
+
+    /**
+     * @return the number of loaded engines, in use or idle.
+     */
+    public synchronized int getEngineCount() {
+        return engines;
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+}
@@ -1,106 +1,204 @@
 package com.digitalvotingpass.ocrscanner;
 
-import android.content.res.AssetManager;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.os.Environment;
 import android.os.Handler;
 import android.os.HandlerThread;
 import android.util.Log;
 
 import com.digitalvotingpass.camera.CameraFragment;
-import com.digitalvotingpass.utilities.Util;
+import com.digitalvotingpass.digitalvotingpass.DocumentData;
+import com.googlecode.tesseract.android.ResultIterator;
 import com.googlecode.tesseract.android.TessBaseAPI;
 
-import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.concurrent.Semaphore;
 
 public class TesseractOCR {
     private static final String TAG = "TesseractOCR";
 
-    private static final long INTER_SCAN_DELAY_MILLIS = 500;
-    private static final long OCR_SCAN_TIMEOUT_MILLIS = 5000;
-
-    private static final String trainedData = "ocrb.traineddata";
-
-    private static final String FOLDER_TESSERACT_DATA = "tessdata";
-    private static final String TRAINED_DATA_EXTENSION = ".traineddata";
+    /**
+     * Time recognition of a single frame may take, a newer frame is likely to be sharper than one
+     * that takes longer.
+     */
+    private static final long OCR_SCAN_TIMEOUT_MILLIS = 2000;
 
 
     private final String name;
+    private final int worker;
 
-    private TessBaseAPI baseApi;
+    private TesseractEngine engine;
+    private volatile TessBaseAPI baseApi;
     private HandlerThread myThread;
     private Handler myHandler;
     private Handler cleanHandler;
     private Handler timeoutHandler;
 
-    private AssetManager assetManager;
+    private final TesseractEngineProvider engineProvider;
     private CameraFragment fragment;
     public boolean stopping = false;
     public boolean isInitialized = false;
 
     // Filled with OCR run times for analysis
     private ArrayList<Long> times = new ArrayList<>();
+    private final ScanBudget budget = new ScanBudget(OCR_SCAN_TIMEOUT_MILLIS);
 
     /**
-     * Lock to ensure only one thread can start copying to device storage.
+     * Timeout Thread, stops recognition of the current frame when timeout occurs while Tesseract
+     * does not report progress.
      */
-    private static Semaphore mDeviceStorageAccessLock = new Semaphore(1);
+    private Runnable timeout = new Runnable() {
+        @Override
+        public void run() {
+            if (budget.cancel()) {
+                Log.w(TAG, "TIMEOUT");
+                stopRecognition();
+            }
+        }
+    };
 
     /**
-     * CURRENTLY NOT FUNCTIONAL
-     * Timeout Thread, should end OCR detection when timeout occurs
+     * Called by Tesseract while recognizing words, stops recognition when the frame is over budget
+     * or was cancelled. A stop from the timeout is lost when it comes just before a recognition
+     * starts, Tesseract clears its cancel flag then, so the cancel is checked here as well.
      */
-    private Runnable timeout = new Runnable() {
+    private TessBaseAPI.ProgressNotifier progressNotifier = new TessBaseAPI.ProgressNotifier() {
         @Override
-        public void run() {
-            Log.e(TAG, "TIMEOUT");
-//            baseApi.stop(); // Does not stop baseApi.getUTF8Text()
+        public void onProgressValues(TessBaseAPI.ProgressValues progressValues) {
+            if (budget.checkExpired()) {
+                Log.w(TAG, "Frame over budget at " + progressValues.getPercent() + "%");
+                stopRecognition();
+            } else if (budget.isCancelled()) {
+                stopRecognition();
+            }
+        }
+    };
+
+    /**
+     * Stop the running recognition. Called from the timeout on the main thread, which may run
+     * after cleanup() released Tesseract.
+     */
+    private void stopRecognition() {
+        TessBaseAPI api = baseApi;
+        if (api != null) {
+            api.stop();
+        }
+    }
+
+    /**
+     * Recognizes the MRZ lines of a frame with Tesseract, within the scan budget.
+     */
+    private MrzLineRecognizer lineRecognizer = new MrzLineRecognizer() {
+        private int width;
+
+        @Override
+        public void setImage(byte[] binary, int width, int height, int bytesPerLine) {
+            this.width = width;
+            baseApi.setPageSegMode(TessBaseAPI.PageSegMode.PSM_SINGLE_LINE);
+            baseApi.setImage(binary, width, height, 0, bytesPerLine);
+            budget.start();
+        }
+
+        @Override
+        public boolean recognizeLine(int top, int bottom, MrzReading reading) {
+            if (budget.isCancelled()) {
+                return false;
+            }
+            baseApi.setRectangle(0, top, width, bottom - top);
+            // Only recognition through getHOCRText() reports progress and can be stopped,
+            // the result iterator then walks the characters of that recognition.
+            baseApi.getHOCRText(0);
+            if (budget.isCancelled()) {
+                return false;
+            }
+            readLine(reading);
+            return true;
         }
     };
 
+    /**
+     * Add the characters of the last recognized line with their confidence to the reading.
+     */
+    private void readLine(MrzReading reading) {
+        ResultIterator iterator = baseApi.getResultIterator();
+        if (iterator == null) {
+            return;
+        }
+        int level = TessBaseAPI.PageIteratorLevel.RIL_SYMBOL;
+        iterator.begin();
+        do {
+            String symbol = iterator.getUTF8Text(level);
+            if (symbol != null && symbol.length() == 1) {
+                reading.addCharacter(symbol.charAt(0), iterator.confidence(level));
+            }
+        } while (iterator.next(level));
+        iterator.delete();
+    }
+
+    private final MrzFrameReader frameReader = new MrzFrameReader(lineRecognizer);
+    private final MrzReading reading = frameReader.getReading();
 
     private Runnable scan = new Runnable() {
         @Override
         public void run() {
             while (!stopping) {
+                LuminanceFrame frame;
+                try {
+                    frame = fragment.takeFrame(worker);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (frame == null) {
+                    // Scanning stopped
+                    break;
+                }
                 Log.v(TAG, "Start Scan");
                 timeoutHandler.postDelayed(timeout, OCR_SCAN_TIMEOUT_MILLIS);
                 long time = System.currentTimeMillis();
-                Bitmap b = fragment.extractBitmap();
-                Mrz mrz = ocr(b);
+                DocumentData data;
+                try {
+                    data = ocr(frame);
+                } finally {
+                    timeoutHandler.removeCallbacks(timeout);
+                    fragment.releaseFrame(frame);
+                }
                 long timetook = System.currentTimeMillis() - time;
                 Log.i(TAG, "took " + timetook / 1000f + " sec");
+                fragment.frameDone(timetook);
+                if (data == null && reading.getLineCount() == 0) {
+                    // Abandoned frames and frames without MRZ lines are counted separately
+                    continue;
+                }
                 times.add(timetook);
-                if (mrz != null && mrz.valid()) {
-                    fragment.scanResultFound(mrz);
+                if (data == null) {
+                    // Combine the characters with those read in earlier frames
+                    Mrz mrz = fragment.addReading(reading);
+                    data = mrz == null ? null : mrz.getPrettyData();
                 }
-                timeoutHandler.removeCallbacks(timeout);
-                try {
-                    Thread.sleep(INTER_SCAN_DELAY_MILLIS);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+                if (data != null) {
+                    fragment.scanResultFound(data);
                 }
             }
             Log.e(TAG, "Stopping scan");
         }
     };
 
-    public TesseractOCR(String name, CameraFragment fragment, final AssetManager assetManager) {
-        this.assetManager = assetManager;
+    /**
+     * @param worker the index of the OCR thread, threads with a higher index only scan when the
+     * fragment lets that many threads scan.
+     */
+    public TesseractOCR(String name, int worker, CameraFragment fragment,
+                        TesseractEngineProvider engineProvider) {
+        this.engineProvider = engineProvider;
         this.fragment = fragment;
         this.name = name;
+        this.worker = worker;
     }
 
     /**
-     * Starts OCR scan routine with delay in msec
-     * @param delay int how msec before start
+     * Starts OCR scan routine, which scans frames as soon as the camera delivers them.
      */
-    public void startScanner(int delay) {
-        myHandler.postDelayed(scan, delay);
+    public void startScanner() {
+        myHandler.post(scan);
     }
 
     /**
@@ -138,25 +236,15 @@ public class TesseractOCR {
     }
 
     /**
-     * Initializes Tesseract library using traineddata file.
+     * Takes a Tesseract engine with the traineddata loaded from the provider.
      * Should not be called directly, is public for testing.
      */
     public void init() {
-        baseApi = new TessBaseAPI();
-        baseApi.setDebug(true);
-        String path = Environment.getExternalStorageDirectory() + "/" + Util.FOLDER_DIGITAL_VOTING_PASS + "/";
-        File trainedDataFile = new File(path, TesseractOCR.FOLDER_TESSERACT_DATA + "/" + trainedData);
         try {
-            mDeviceStorageAccessLock.acquire();
-            if (!trainedDataFile.exists()) {
-                Log.i(TAG, "No existing trained data found, copying from assets..");
-                Util.copyAssetsFile(assetManager.open(trainedData), trainedDataFile);
-            } else {
-                Log.i(TAG, "Existing trained data found");
-            }
-            mDeviceStorageAccessLock.release();
-            baseApi.init(path, trainedData.replace(TesseractOCR.TRAINED_DATA_EXTENSION, "")); //extract language code from trained data file
-        } catch (IOException | InterruptedException e) {
+            engine = engineProvider.acquire();
+            engine.setProgressNotifier(progressNotifier);
+            baseApi = engine.getApi();
+        } catch (IOException e) {
             e.printStackTrace();
             //TODO show error to user, coping failed
         }
@@ -171,12 +259,10 @@ public class TesseractOCR {
     public Mrz ocr(Bitmap bitmap) {
         if (bitmap == null) return null;
         if (isInitialized && !stopping) {
-            BitmapFactory.Options options = new BitmapFactory.Options();
-            options.inSampleSize = 2;
             Log.v(TAG, "Image dims x: " + bitmap.getWidth() + ", y: " + bitmap.getHeight());
+            // The whole image is scanned, let Tesseract find the lines
+            baseApi.setPageSegMode(TessBaseAPI.PageSegMode.PSM_SINGLE_BLOCK);
             baseApi.setImage(bitmap);
-            baseApi.setVariable("tessedit_char_whitelist",
-                    "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ<");
             String recognizedText = baseApi.getUTF8Text();
             Log.v(TAG, "OCR Result: " + recognizedText);
             return new Mrz(recognizedText);
@@ -186,6 +272,36 @@ public class TesseractOCR {
         }
     }
 
+    /**
+     * Performs OCR scan on the greyscale frame, if tesseract is initialized and not currently stopping.
+     * The frame is read by the {@link MrzFrameReader}, recognition is stopped when it takes
+     * longer than the scan timeout.
+     * @param frame LuminanceFrame of the scan segment
+     * @return the document data when the frame holds a valid MRZ, otherwise null. The recognized
+     * lines are left in the reading, it is empty when the frame has no MRZ lines or was abandoned.
+     */
+    public DocumentData ocr(LuminanceFrame frame) {
+        if (isInitialized && !stopping) {
+            Log.v(TAG, "Image dims x: " + frame.getWidth() + ", y: " + frame.getHeight());
+            DocumentData data = frameReader.read(frame);
+            if (!budget.isRunning()) {
+                // No lines were found to recognize, the budget was not started
+                return null;
+            }
+            if (!budget.finish()) {
+                Log.v(TAG, "Frame abandoned");
+                reading.clear();
+                return null;
+            }
+            Log.v(TAG, "OCR Result: " + reading + ", format: " + frameReader.getFormat());
+            return data;
+        } else {
+            reading.clear();
+            Log.e(TAG, "Trying ocr() while not initalized or stopping!");
+            return null;
+        }
+    }
+
     /**
      * Cleans memory used by Tesseract library and closes OCR thread.
      * After this has been called initialize() needs to be called to restart the thread and init Tesseract
@@ -204,7 +320,12 @@ public class TesseractOCR {
             }
             myThread = null;
             myHandler = null;
-            baseApi.end();
+            if (engine != null) {
+                // The engine is kept loaded for the next scan
+                engineProvider.release(engine);
+                engine = null;
+            }
+            baseApi = null;
             isInitialized = false;
             stopping = false;
         }
@@ -224,5 +345,9 @@ public class TesseractOCR {
         if(times.size()>0) {
             Log.e(TAG, "Max runtime was " + max / 1000f + " sec and avg was " + curravg / times.size() / 1000f + " tot tries: " + times.size());
         }
+        Log.e(TAG, "Frames completed: " + budget.getCompleted() + ", abandoned: " + budget.getAbandoned()
+                + ", without MRZ lines: " + frameReader.getFramesWithoutLines());
+        Log.e(TAG, "MRZ lines recognized: " + frameReader.getLinesRecognized()
+                + ", skipped: " + frameReader.getLinesSkipped());
     }
 }
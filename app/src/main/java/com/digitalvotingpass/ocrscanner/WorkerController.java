@@ -0,0 +1,189 @@
+package com.digitalvotingpass.ocrscanner;
+
+/**
+ * Chooses how many of the OCR threads scan, from the throughput and latency they measure and the
+ * temperature of the device. Every OCR thread reports the time each frame took with
+ * {@link #frameDone(long)}; per window of a few seconds the controller adds a thread when the
+ * active ones are busy, unless a recent measurement with one more showed too little gain, and
+ * removes one when the frames do not keep them busy or when the extra thread did not raise the
+ * throughput, as happens with the slow cores of a big.LITTLE phone. When the device gets warm threads are
+ * removed one per window, when it gets hot only one thread scans.
+ * Threads with an index of the active count or higher wait in {@link #awaitTurn(int)}.
+ */
+public class WorkerController {
+    static final long WINDOW_MILLIS = 3000;
+    /**
+     * Measurements older than this are measured again, the scene and the clock speeds change.
+     */
+    static final long REMEASURE_MILLIS = 30000;
+    /**
+     * An extra thread is only kept when it raises the throughput by this factor.
+     */
+    static final float MIN_GAIN = 1.1f;
+    /**
+     * Share of the active threads that should be busy before another one is added.
+     */
+    static final float SATURATED = 0.75f;
+    static final float WARM_CELSIUS = 40f;
+    static final float HOT_CELSIUS = 45f;
+
+    private final int maxWorkers;
+    private int workers;
+    private boolean closed = false;
+    private float temperature = Float.NaN;
+
+    private long windowStart;
+    private int windowFrames = 0;
+    private long windowLatency = 0;
+
+    /**
+     * Frames per second measured with the number of threads at the index, and when.
+     */
+    private final float[] measured;
+    private final long[] measuredAt;
+    private float throughput = 0;
+    private float latency = 0;
+    private long changes = 0;
+
+    /**
+     * @param maxWorkers the number of OCR threads, half of them scan at the start.
+     */
+    public WorkerController(int maxWorkers) {
+        if (maxWorkers < 1)
+            throw new IllegalArgumentException("There should be at least 1 worker");
+        this.maxWorkers = maxWorkers;
+        workers = (maxWorkers + 1) / 2;
+        measured = new float[maxWorkers + 2];
+        measuredAt = new long[maxWorkers + 2];
+        windowStart = now();
+    }
+
+    /**
+     * Wait until the OCR thread with the given index may scan.
+     * @param worker the index of the OCR thread, from 0.
+     * @return true when the thread may take a frame, false when the controller is closed.
+     */
+    public synchronized boolean awaitTurn(int worker) throws InterruptedException {
+        while (!closed && worker >= workers) {
+            wait();
+        }
+        return !closed;
+    }
+
+    /**
+     * @param worker the index of the OCR thread, from 0.
+     * @return true when the thread may scan now, without waiting.
+     */
+    public synchronized boolean mayScan(int worker) {
+        return !closed && worker < workers;
+    }
+
+    /**
+     * Count a frame that an OCR thread finished, abandoned or not.
+     * @param latencyMillis the time scanning the frame took.
+     * @return true when the number of threads that scan changed.
+     */
+    public synchronized boolean frameDone(long latencyMillis) {
+        windowFrames++;
+        windowLatency += latencyMillis;
+        return now() - windowStart >= WINDOW_MILLIS && evaluate();
+    }
+
+    /**
+     * @param celsius the temperature of the device, or NaN when it is not known.
+     */
+    public synchronized void setTemperature(float celsius) {
+        temperature = celsius;
+    }
+
+    private boolean evaluate() {
+        long now = now();
+        throughput = windowFrames * 1000f / (now - windowStart);
+        latency = windowFrames == 0 ? 0 : windowLatency / (float) windowFrames;
+        windowStart = now;
+        windowFrames = 0;
+        windowLatency = 0;
+        measured[workers] = throughput;
+        measuredAt[workers] = now;
+
+        // Threads busy on average, the throughput times the time a frame takes
+        float busy = throughput * latency / 1000f;
+        int next = workers;
+        if (temperature >= HOT_CELSIUS) {
+            next = 1;
+        } else if (temperature >= WARM_CELSIUS) {
+            next = Math.max(1, workers - 1);
+        } else if (workers > 1 && busy < workers - 1) {
+            // Fewer threads keep up with the frames
+            next = workers - 1;
+        } else if (workers > 1 && isFresh(workers - 1, now)
+                && throughput < measured[workers - 1] * MIN_GAIN) {
+            next = workers - 1;
+        } else if (workers < maxWorkers && busy >= workers * SATURATED
+                && (!isFresh(workers + 1, now) || measured[workers + 1] >= throughput * MIN_GAIN)) {
+            next = workers + 1;
+        }
+        if (next == workers) {
+            return false;
+        }
+        workers = next;
+        changes++;
+        notifyAll();
+        return true;
+    }
+
+    private boolean isFresh(int count, long now) {
+        return measuredAt[count] > 0 && now - measuredAt[count] < REMEASURE_MILLIS;
+    }
+
+    /**
+     * Let the OCR threads scan again after {@link #close()}, the number of threads that scan is
+     * kept from the last scan.
+     */
+    public synchronized void open() {
+        closed = false;
+        windowStart = now();
+        windowFrames = 0;
+        windowLatency = 0;
+    }
+
+    /**
+     * Wake up the waiting OCR threads, so they can stop.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * @return the number of OCR threads that scan.
+     */
+    public synchronized int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * @return the frames per second scanned in the last window.
+     */
+    public synchronized float getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * @return the mean time in milliseconds a frame took in the last window.
+     */
+    public synchronized float getLatency() {
+        return latency;
+    }
+
+    /**
+     * @return the number of times the number of scanning threads changed.
+     */
+    public synchronized long getChanges() {
+        return changes;
+    }
+
+    long now() {
+        return System.currentTimeMillis();
+    }
+}
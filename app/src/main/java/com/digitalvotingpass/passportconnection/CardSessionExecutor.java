@@ -0,0 +1,133 @@
+package com.digitalvotingpass.passportconnection;
+
+import android.nfc.Tag;
+import android.nfc.TagLostException;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.digitalvotingpass.blockchain.BlockChain;
+import com.digitalvotingpass.digitalvotingpass.DocumentData;
+
+import org.bitcoinj.core.Asset;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs card sessions, one {@link VoterCheckPipeline} at a time, on a background thread and
+ * reports progress and the outcome on the main thread.
+ * Starting a new session cancels the running one, since a newly discovered tag means the
+ * previous one was lost. Data read from a document is kept in a {@link DocumentSessionCache}
+ * for a retry with the same document.
+ */
+public class CardSessionExecutor {
+    private final ExecutorService cardExecutor = Executors.newSingleThreadExecutor();
+    private final ExecutorService lookupExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final DocumentSessionCache sessionCache = new DocumentSessionCache();
+    private VoterCheckPipeline current;
+
+    /**
+     * Receives the progress and outcome of a card session on the main thread.
+     * Nothing is reported for a session after it has been cancelled.
+     */
+    public interface Callback {
+        void onStageCompleted(String stage);
+        void onSuccess(VoterCheckPipeline.Result result);
+        /**
+         * The document was taken away from the device during the session.
+         */
+        void onTagLost();
+        void onFailure(Exception e);
+    }
+
+    /**
+     * Start a session for the document on the tag, cancelling the running session.
+     * @param blockChain the blockchain to look up the balance in.
+     * @param asset the asset of the chosen election.
+     * @param tag the NFC tag of the document.
+     * @param documentData the data needed for BAC.
+     * @param callback receives progress and outcome on the main thread.
+     */
+    public synchronized void start(BlockChain blockChain, Asset asset, final Tag tag,
+                                   final DocumentData documentData, final Callback callback) {
+        cancel();
+        final VoterCheckPipeline pipeline = new VoterCheckPipeline(blockChain, asset, lookupExecutor, sessionCache);
+        pipeline.setProgressListener(new VoterCheckPipeline.ProgressListener() {
+            @Override
+            public void onStageCompleted(final String stage) {
+                post(pipeline, new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onStageCompleted(stage);
+                    }
+                });
+            }
+        });
+        current = pipeline;
+        cardExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final VoterCheckPipeline.Result result = pipeline.run(tag, documentData);
+                    post(pipeline, new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onSuccess(result);
+                        }
+                    });
+                } catch (CancellationException ignored) {
+                    // the caller asked for this, there is nothing to report
+                } catch (TagLostException e) {
+                    post(pipeline, new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onTagLost();
+                        }
+                    });
+                } catch (final Exception e) {
+                    post(pipeline, new Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onFailure(e);
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancel the running session, if any.
+     */
+    public synchronized void cancel() {
+        if (current != null) {
+            current.cancel();
+            current = null;
+        }
+    }
+
+    /**
+     * Cancel the running session and stop the background threads.
+     */
+    public void shutdown() {
+        cancel();
+        sessionCache.clear();
+        cardExecutor.shutdownNow();
+        lookupExecutor.shutdownNow();
+    }
+
+    /**
+     * Run the runnable on the main thread, unless the pipeline has been cancelled by then.
+     */
+    private void post(final VoterCheckPipeline pipeline, final Runnable runnable) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (!pipeline.isCancelled())
+                    runnable.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,205 @@
+package com.digitalvotingpass.passportconnection;
+
+import com.digitalvotingpass.digitalvotingpass.Voter;
+
+import net.sf.scuba.data.Gender;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Keeps the public key and voter read from a document for a short time, so a voter who has to
+ * tap again after a lost tag only redoes BAC and the steps that failed.
+ * Entries are only kept in memory, encrypted with a key that is generated for this cache, and
+ * are looked up by a hash of the document number.
+ */
+public class DocumentSessionCache {
+    public static final long DEFAULT_TIME_TO_LIVE_MILLIS = 2 * 60 * 1000;
+    private static final int IV_LENGTH = 12;
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private final long timeToLiveMillis;
+    private final SecretKey key;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<ByteBuffer, Entry> entries = new HashMap<>();
+
+    /**
+     * The data read from a document.
+     */
+    public static class Session {
+        private final PublicKey pubKey;
+        private final Voter voter;
+
+        Session(PublicKey pubKey, Voter voter) {
+            this.pubKey = pubKey;
+            this.voter = voter;
+        }
+
+        public PublicKey getPubKey() {
+            return pubKey;
+        }
+
+        /**
+         * @return the voter, or null when dg1 had not been read.
+         */
+        public Voter getVoter() {
+            return voter;
+        }
+    }
+
+    private static class Entry {
+        private final byte[] iv;
+        private final byte[] data;
+        private final long expiry;
+
+        Entry(byte[] iv, byte[] data, long expiry) {
+            this.iv = iv;
+            this.data = data;
+            this.expiry = expiry;
+        }
+    }
+
+    public DocumentSessionCache() {
+        this(DEFAULT_TIME_TO_LIVE_MILLIS);
+    }
+
+    /**
+     * @param timeToLiveMillis how long an entry is kept after it is stored.
+     */
+    public DocumentSessionCache(long timeToLiveMillis) {
+        this.timeToLiveMillis = timeToLiveMillis;
+        try {
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(128);
+            this.key = generator.generateKey();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Store the data read from a document.
+     * @param documentNumber the document number used for BAC.
+     * @param pubKey the AA public key from dg15.
+     * @param voter the voter from dg1, or null when dg1 has not been read yet.
+     */
+    public synchronized void put(String documentNumber, PublicKey pubKey, Voter voter) {
+        try {
+            byte[] iv = new byte[IV_LENGTH];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+            byte[] data = cipher.doFinal(serialize(pubKey, voter));
+            entries.put(lookupKey(documentNumber), new Entry(iv, data, now() + timeToLiveMillis));
+        } catch (GeneralSecurityException | IOException e) {
+            // Not caching only costs a new read of the document
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Get the data read earlier from the document.
+     * @param documentNumber the document number used for BAC.
+     * @return the session or null when it was not stored or has expired.
+     */
+    public synchronized Session get(String documentNumber) {
+        removeExpired();
+        Entry entry = entries.get(lookupKey(documentNumber));
+        if (entry == null)
+            return null;
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, entry.iv));
+            return deserialize(cipher.doFinal(entry.data));
+        } catch (GeneralSecurityException | IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Forget the data of a document, for example when the voter is done.
+     * @param documentNumber the document number used for BAC.
+     */
+    public synchronized void remove(String documentNumber) {
+        entries.remove(lookupKey(documentNumber));
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        removeExpired();
+        return entries.size();
+    }
+
+    long now() {
+        return System.currentTimeMillis();
+    }
+
+    private void removeExpired() {
+        long now = now();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().expiry <= now)
+                it.remove();
+        }
+    }
+
+    private static ByteBuffer lookupKey(String documentNumber) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return ByteBuffer.wrap(digest.digest(documentNumber.getBytes("UTF-8")));
+        } catch (GeneralSecurityException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] serialize(PublicKey pubKey, Voter voter) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(pubKey.getAlgorithm());
+        byte[] encoded = pubKey.getEncoded();
+        out.writeInt(encoded.length);
+        out.write(encoded);
+        out.writeBoolean(voter != null);
+        if (voter != null) {
+            out.writeUTF(voter.getFirstName());
+            out.writeUTF(voter.getLastName());
+            out.writeInt(voter.getGender().toInt());
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static Session deserialize(byte[] data) throws IOException, GeneralSecurityException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        String algorithm = in.readUTF();
+        byte[] encoded = new byte[in.readInt()];
+        in.readFully(encoded);
+        PublicKey pubKey = KeyFactory.getInstance(algorithm).generatePublic(new X509EncodedKeySpec(encoded));
+        Voter voter = null;
+        if (in.readBoolean())
+            voter = new Voter(in.readUTF(), in.readUTF(), Gender.getInstance(in.readInt()));
+        return new Session(pubKey, voter);
+    }
+}
@@ -29,8 +29,6 @@ import com.digitalvotingpass.electionchoice.Election;
 import com.digitalvotingpass.utilities.Util;
 import com.google.gson.Gson;
 
-import org.bitcoinj.core.AssetBalance;
-import org.jmrtd.PassportService;
 import java.security.PublicKey;
 import java.security.Security;
 import java.util.ArrayList;
@@ -45,6 +43,9 @@ public class PassportConActivity extends AppCompatActivity {
     private DocumentData documentData;
     private ImageView progressView;
     private PassportConActivity thisActivity;
+    private Election election;
+    // Runs the card I/O in the background
+    private CardSessionExecutor sessionExecutor;
 
     /**
      * This activity usually be loaded from the starting screen of the app.
@@ -69,6 +70,20 @@ public class PassportConActivity extends AppCompatActivity {
         mNfcAdapter = NfcAdapter.getDefaultAdapter(this);
         checkNFCStatus();
         notice.setText(R.string.nfc_enabled);
+
+        // Load the election once instead of on every tap
+        SharedPreferences sharedPrefs = getSharedPreferences(getString(R.string.shared_preferences_file), Context.MODE_PRIVATE);
+        Gson gson = new Gson();
+        String json = sharedPrefs.getString(getString(R.string.shared_preferences_key_election), "");
+        election = gson.fromJson(json, Election.class);
+
+        sessionExecutor = new CardSessionExecutor();
+    }
+
+    @Override
+    protected void onDestroy() {
+        sessionExecutor.shutdown();
+        super.onDestroy();
     }
 
     /**
@@ -86,6 +101,8 @@ public class PassportConActivity extends AppCompatActivity {
 
     @Override
     protected void onPause() {
+        // The document cannot stay on the reader when the activity is left
+        sessionExecutor.cancel();
         // Call this before super.onPause, otherwise an IllegalArgumentException is thrown as well.
         stopForegroundDispatch(this, mNfcAdapter);
 
@@ -137,60 +154,48 @@ public class PassportConActivity extends AppCompatActivity {
 
     /**
      * Handle the intent following from a NFC detection.
-     *
+     * The voter check runs in the background, see {@link CardSessionExecutor}. A new tag cancels
+     * the check of the previous one.
      */
     private void handleIntent(Intent intent) {
         progressView.setImageResource(R.drawable.nfc_icon_1);
 
         // if nfc tag holds no data, return
-        Tag tag = intent.getParcelableExtra(NfcAdapter.EXTRA_TAG);
+        final Tag tag = intent.getParcelableExtra(NfcAdapter.EXTRA_TAG);
         if (tag == null) {
             return;
         }
 
-        // Open a connection with the ID, return a PassportService object which holds the open connection
-        PassportConnection pcon= new PassportConnection();
-        PassportService ps;
         try {
-            ps = pcon.openConnection(tag, documentData);
-        } catch(Exception e) {
+            sessionExecutor.start(BlockChain.getInstance(null), election.getAsset(), tag, documentData,
+                    new CardSessionExecutor.Callback() {
+                        @Override
+                        public void onStageCompleted(String stage) {
+                            if (VoterCheckPipeline.STAGE_DG1.equals(stage)) {
+                                progressView.setImageResource(R.drawable.nfc_icon_2);
+                            } else if (VoterCheckPipeline.STAGE_SIGN.equals(stage)) {
+                                progressView.setImageResource(R.drawable.nfc_icon_3);
+                            }
+                        }
+
+                        @Override
+                        public void onSuccess(VoterCheckPipeline.Result result) {
+                            // when all data is loaded start ResultActivity
+                            startResultActivity(result.getPubKey(), result.getSignedTransactions(), result.getVoter());
+                        }
+
+                        @Override
+                        public void onTagLost() {
+                            displayNfcError();
+                        }
+
+                        @Override
+                        public void onFailure(Exception e) {
+                            handleConnectionFailed(e);
+                        }
+                    });
+        } catch (Exception e) {
             handleConnectionFailed(e);
-            ps = null;
-        }
-
-        if(ps != null) {
-            try {
-
-                // Get public key from dg15
-                PublicKey pubKey = pcon.getAAPublicKey(ps);
-
-                // Get voter information from dg1
-                Voter voter = pcon.getVoter(ps);
-
-                progressView.setImageResource(R.drawable.nfc_icon_2);
-
-                SharedPreferences sharedPrefs = getSharedPreferences(getString(R.string.shared_preferences_file), Context.MODE_PRIVATE);
-                Gson gson = new Gson();
-                String json = sharedPrefs.getString(getString(R.string.shared_preferences_key_election), "");
-                Election election = gson.fromJson(json, Election.class);
-
-                BlockChain bc = BlockChain.getInstance(null);
-                AssetBalance balance = bc.getVotingPassBalance(pubKey, election.getAsset());
-
-                ArrayList<byte[]> signedTransactions = bc.getSpendUtxoTransactions(pubKey, balance, pcon);
-                progressView.setImageResource(R.drawable.nfc_icon_3);
-
-                // when all data is loaded start ResultActivity
-                startResultActivity(pubKey, signedTransactions, voter);
-            } catch (Exception ex) {
-                handleConnectionFailed(ex);
-            } finally {
-                try {
-                    ps.close();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
         }
     }
 
@@ -204,15 +209,21 @@ public class PassportConActivity extends AppCompatActivity {
         if(e.toString().toLowerCase().contains("authentication failed")){
             displayCheckInputSnackbar();
             progressView.setImageResource(R.drawable.nfc_icon_empty);
-        } else if(e.toString().toLowerCase().contains("tag was lost")) {
-            Toast.makeText(this, getString(R.string.NFC_error), Toast.LENGTH_LONG).show();
-            progressView.setImageResource(R.drawable.nfc_icon_empty);
         } else {
             Toast.makeText(this, getString(R.string.general_error), Toast.LENGTH_LONG).show();
             progressView.setImageResource(R.drawable.nfc_icon_empty);
         }
     }
 
+    /**
+     * Tell the user reading the document failed, for example because it was moved away from the
+     * phone, and reset the progress icon.
+     */
+    private void displayNfcError() {
+        Toast.makeText(this, getString(R.string.NFC_error), Toast.LENGTH_LONG).show();
+        progressView.setImageResource(R.drawable.nfc_icon_empty);
+    }
+
     /**
      * Method to start the ResultActivity once all the data is loaded.
      * Creates new intent with the read data
@@ -230,8 +241,7 @@ public class PassportConActivity extends AppCompatActivity {
             startActivity(intent);
             finish();
         } else {
-            Toast.makeText(this, getString(R.string.NFC_error), Toast.LENGTH_LONG).show();
-            progressView.setImageResource(R.drawable.nfc_icon_empty);
+            displayNfcError();
         }
     }
 
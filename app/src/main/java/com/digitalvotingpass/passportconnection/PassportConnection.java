@@ -22,6 +22,8 @@ import java.security.PublicKey;
 public class PassportConnection {
 
     private PassportService ps;
+    private int signCount = 0;
+    private long signTimeNanos = 0;
 
     /**
      * Opens a connection with the ID by doing BAC
@@ -31,31 +33,24 @@ public class PassportConnection {
      * @return PassportService - passportservice that has an open connection with the ID
      */
     public PassportService openConnection(Tag tag, final DocumentData docData) throws CardServiceException {
+        IsoDep nfc = IsoDep.get(tag);
+        return openConnection(CardService.getInstance(nfc), docData);
+    }
+
+    /**
+     * Opens a connection with the document behind the card service by doing BAC.
+     *
+     * @param cs - card service of the document, for example a simulated document in tests
+     * @return PassportService - passportservice that has an open connection with the ID
+     */
+    public PassportService openConnection(CardService cs, final DocumentData docData) throws CardServiceException {
+        PassportService service = openService(cs);
         try {
-            IsoDep nfc = IsoDep.get(tag);
-            CardService cs = CardService.getInstance(nfc);
-            this.ps = new PassportService(cs);
-            this.ps.open();
-
-            // Get the information needed for BAC from the data provided by OCR
-            this.ps.sendSelectApplet(false);
-            BACKeySpec bacKey = new BACKeySpec() {
-                @Override
-                public String getDocumentNumber() {
-                    return docData.getDocumentNumber();
-                }
-
-                @Override
-                public String getDateOfBirth() { return docData.getDateOfBirth(); }
-
-                @Override
-                public String getDateOfExpiry() { return docData.getExpiryDate(); }
-            };
-            ps.doBAC(bacKey);
-            return ps;
+            doBAC(service, docData);
+            return service;
         } catch (CardServiceException ex) {
             try {
-                ps.close();
+                service.close();
             } catch (Exception ex2) {
                 ex2.printStackTrace();
             }
@@ -63,6 +58,45 @@ public class PassportConnection {
         }
     }
 
+    /**
+     * Opens the passport service of the document on the tag, without BAC.
+     * Closing the service aborts {@link #doBAC(PassportService, DocumentData)}.
+     *
+     * @param tag - NFC tag of the document
+     * @return PassportService - passportservice on which BAC still has to be done
+     */
+    public PassportService openService(Tag tag) throws CardServiceException {
+        return openService(CardService.getInstance(IsoDep.get(tag)));
+    }
+
+    private PassportService openService(CardService cs) throws CardServiceException {
+        this.ps = new PassportService(cs);
+        this.ps.open();
+        return this.ps;
+    }
+
+    /**
+     * Selects the passport applet and does BAC with the data provided by OCR.
+     *
+     * @param ps - passportservice opened with {@link #openService(Tag)}
+     */
+    public void doBAC(PassportService ps, final DocumentData docData) throws CardServiceException {
+        ps.sendSelectApplet(false);
+        BACKeySpec bacKey = new BACKeySpec() {
+            @Override
+            public String getDocumentNumber() {
+                return docData.getDocumentNumber();
+            }
+
+            @Override
+            public String getDateOfBirth() { return docData.getDateOfBirth(); }
+
+            @Override
+            public String getDateOfExpiry() { return docData.getExpiryDate(); }
+        };
+        ps.doBAC(bacKey);
+    }
+
     /**
      * Retrieves the public key used for Active Authentication from datagroup 15.
      *
@@ -89,13 +123,13 @@ public class PassportConnection {
 
     /**
      * Signs 8 bytes by the passport using the AA functionality.
+     * Only the INTERNAL AUTHENTICATE command is sent, dg15 does not have to be selected for it.
      *
      * @return byte[] - signed byte array
      */
     public byte[] signData(PassportService ps, byte[] data) throws Exception{
-        InputStream is15 = null;
+        long start = System.nanoTime();
         try {
-            is15 = ps.getInputStream(PassportService.EF_DG15);
             // doAA of JMRTD library only returns signed data, and does not have the AA functionality yet
             // there is no need for sending public key information with the method.
             return ps.doAA(null, null, null, data);
@@ -103,8 +137,8 @@ public class PassportConnection {
             ex.printStackTrace();
             throw ex;
         } finally {
-            if (is15 != null)
-                is15.close();
+            signCount++;
+            signTimeNanos += System.nanoTime() - start;
         }
     }
 
@@ -112,6 +146,20 @@ public class PassportConnection {
         return this.signData(this.ps, data);
     }
 
+    /**
+     * @return the number of signatures requested from the document on this connection.
+     */
+    public int getSignCount() {
+        return signCount;
+    }
+
+    /**
+     * @return the time in milliseconds spent waiting for signatures of the document.
+     */
+    public long getSignTimeMillis() {
+        return signTimeNanos / 1000000;
+    }
+
     /**
      * Get personal information about a voter from datagroup1.
      * @return Voter - Voter object containing personal data.
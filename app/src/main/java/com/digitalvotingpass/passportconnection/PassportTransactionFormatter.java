@@ -1,5 +1,6 @@
 package com.digitalvotingpass.passportconnection;
 
+import com.digitalvotingpass.utilities.MultiChainAddressGenerator;
 import com.digitalvotingpass.utilities.Util;
 import com.google.common.primitives.Bytes;
 
@@ -9,12 +10,45 @@ import org.bitcoinj.core.TransactionOutput;
 
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.security.PublicKey;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 public class PassportTransactionFormatter {
+    private static final int HASH_LENGTH = 32;
+    private static final int SIGNATURE_PARTS = 4;
+    private static final int SIGNATURE_PART_LENGTH = 80;
+    private static final int SIGNED_DATA_LENGTH = 8;
+    private static final int DESTINATION_OFFSET = 3;
+
+    private static final byte[] VERSION = {0x01, 0x00, 0x00, 0x00};
+    private static final byte[] SEQUENCE = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF};
+    private static final byte OUTPUT_COUNT = 0x01;
+    private static final byte[] SPEND_AMOUNT = {0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00};
+    private static final byte[] LOCK_TIME = {0x00, 0x00, 0x00, 0x00};
+    private static final byte[] HASH_CODE_TYPE = {0x01, 0x00, 0x00, 0x00};
+    private static final byte[] SIGNATURE_PREFIX = {(byte) 0xFD, (byte) 0x97, 0x01, 0x4D, 0x41, 0x01};
+    private static final byte SIGHASH_ALL = 0x01;
+    private static final byte[] PUBLIC_KEY_PREFIX = {0x4C, 0x51};
+
+    private static final int OUTPOINT_LENGTH = HASH_LENGTH + 4;
+    private static final int SCRIPT_SIG_LENGTH = SIGNATURE_PREFIX.length
+            + SIGNATURE_PARTS * SIGNATURE_PART_LENGTH + 1 + PUBLIC_KEY_PREFIX.length
+            + MultiChainAddressGenerator.RAW_PUBLIC_KEY_LENGTH;
+
+    /**
+     * Layout of an asset transfer script: the address is followed by a push of the asset metadata,
+     * which is "spkq", the asset reference and the little endian quantity.
+     */
+    private static final int ASSET_METADATA_PUSH_OFFSET = 25;
+    private static final int ASSET_METADATA_LENGTH = 28;
+    private static final int ASSET_QUANTITY_OFFSET = ASSET_METADATA_PUSH_OFFSET + 1 + 20;
+    private static final byte[] ASSET_TRANSFER_PREFIX = {0x73, 0x70, 0x6B, 0x71};
 
     private Address destination;
+    private List<TransactionOutput> utxos;
     private TransactionOutput utxo;
     private byte[] data;
 
@@ -26,6 +60,15 @@ public class PassportTransactionFormatter {
         setUTXO(utxo);
     }
 
+    /**
+     * Class builds the bytes needed for one transaction spending all given UTXOs into a single
+     * output, see {@link #canCombine(List)}.
+     */
+    public PassportTransactionFormatter(List<TransactionOutput> utxos, Address destination) {
+        setDestinationAddress(destination);
+        setUTXOs(utxos);
+    }
+
     /**
      * Set the address of the public key which can spend this output.
      * @param destination
@@ -40,18 +83,278 @@ public class PassportTransactionFormatter {
      */
     public void setUTXO(TransactionOutput utxo) {
         this.utxo = utxo;
+        this.utxos = Collections.singletonList(utxo);
+    }
+
+    /**
+     * Set the UTXOs we would like to spend in one transaction.
+     * @param utxos
+     */
+    public void setUTXOs(List<TransactionOutput> utxos) {
+        if (utxos == null || utxos.isEmpty())
+            throw new IllegalArgumentException("At least one UTXO is needed");
+        this.utxo = utxos.get(0);
+        this.utxos = utxos;
+    }
+
+    /**
+     * Check if the UTXOs can be spent in one transaction with a single output. This is the case
+     * when there is one UTXO, or when all UTXOs transfer the same asset with the same script so
+     * only the quantities have to be added up.
+     * @param utxos the UTXOs to spend.
+     * @return true if they can be combined.
+     */
+    public static boolean canCombine(List<TransactionOutput> utxos) {
+        if (utxos == null || utxos.isEmpty())
+            return false;
+        if (utxos.size() == 1)
+            return true;
+        byte[] reference = utxos.get(0).getScriptBytes();
+        for (TransactionOutput output : utxos) {
+            if (!isSameAssetTransfer(reference, output.getScriptBytes()))
+                return false;
+        }
+        return true;
     }
 
     /**
      * Builds the raw transaction and signes using the passport.
+     * The unsigned and the signed transaction are written into one buffer, see
+     * {@link #serializeSigned(PublicKey, PassportConnection)}.
      * @param pcon
      */
     public byte[] buildAndSign(PublicKey pubKey, PassportConnection pcon) throws Exception {
-        byte[][] parts = buildRawTransaction();
-        this.data = signRawTransaction(pubKey, parts, pcon);
+        this.data = serializeSigned(pubKey, pcon);
         return this.data;
     }
 
+    /**
+     * Serializes the unsigned transaction for the first input, including the hash code type, as
+     * it is hashed for signing. For a single UTXO this gives the same bytes as concatenating the
+     * parts of {@link #buildRawTransaction()}.
+     * @return byte[] rawTransaction or null when a utxo has no parent transaction.
+     */
+    public byte[] serializeUnsigned() {
+        return serializeUnsigned(0);
+    }
+
+    /**
+     * Serializes the unsigned transaction as it is hashed for signing the given input. Only that
+     * input contains the script of the output it spends, the other input scripts are empty.
+     * @param inputIndex the input that is signed.
+     * @return byte[] rawTransaction or null when a utxo has no parent transaction.
+     */
+    public byte[] serializeUnsigned(int inputIndex) {
+        if (!hasParentTransactions())
+            return null;
+        byte[] outputScript = buildOutputScript();
+        ByteBuffer buffer = ByteBuffer.allocate(unsignedLength(inputIndex, outputScript.length));
+        writeUnsigned(buffer, inputIndex, outputScript);
+        return buffer.array();
+    }
+
+    /**
+     * Serializes the transaction and signs every input using the travel document.
+     * The unsigned transaction of every input is written into a buffer sized for the signed
+     * transaction and hashed, and then overwritten with the signed transaction, so no
+     * intermediate parts are allocated. Every input needs its own four signatures of the document.
+     * For a single UTXO this gives the same bytes as
+     * {@link #signRawTransaction(PublicKey, byte[][], PassportConnection)}.
+     * @return signedRawTransaction
+     */
+    public byte[] serializeSigned(PublicKey pubKey, PassportConnection pcon) throws Exception {
+        if (!hasParentTransactions())
+            throw new IllegalStateException("UTXO has no parent transaction");
+        byte[] outputScript = buildOutputScript();
+        int inputs = utxos.size();
+        int signedLength = signedLength(outputScript.length);
+        int capacity = signedLength;
+        for (int i = 0; i < inputs; i++) {
+            capacity = Math.max(capacity, unsignedLength(i, outputScript.length));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(capacity);
+
+        // Double hash the transaction for every input
+        byte[] hashes = new byte[inputs * HASH_LENGTH];
+        for (int i = 0; i < inputs; i++) {
+            int length = writeUnsigned(buffer, i, outputScript);
+            System.arraycopy(Sha256Hash.hashTwice(buffer.array(), 0, length), 0, hashes, i * HASH_LENGTH, HASH_LENGTH);
+        }
+
+        // Write the signed transaction, the scriptsig of every input holds signature and public key
+        byte[] publicKeyASN = pubKey.getEncoded();
+        buffer.position(0);
+        buffer.put(VERSION);
+        writeVarInt(buffer, inputs);
+        for (int i = 0; i < inputs; i++) {
+            writeOutpoint(buffer, utxos.get(i));
+            buffer.put(SIGNATURE_PREFIX);
+            for (int j = 0; j < SIGNATURE_PARTS; j++) {
+                int from = i * HASH_LENGTH + j * SIGNED_DATA_LENGTH;
+                byte[] hashPart = Arrays.copyOfRange(hashes, from, from + SIGNED_DATA_LENGTH);
+                buffer.put(pcon.signData(hashPart), 0, SIGNATURE_PART_LENGTH);
+            }
+            buffer.put(SIGHASH_ALL);
+            buffer.put(PUBLIC_KEY_PREFIX);
+            buffer.put(publicKeyASN, publicKeyASN.length - MultiChainAddressGenerator.RAW_PUBLIC_KEY_LENGTH,
+                    MultiChainAddressGenerator.RAW_PUBLIC_KEY_LENGTH);
+            buffer.put(SEQUENCE);
+        }
+
+        // Outputs, the hash code type is kept at the end like in signRawTransaction
+        writeOutputs(buffer, outputScript);
+        buffer.put(HASH_CODE_TYPE);
+
+        if (buffer.capacity() == signedLength)
+            return buffer.array();
+        return Arrays.copyOf(buffer.array(), signedLength);
+    }
+
+    private boolean hasParentTransactions() {
+        for (TransactionOutput output : utxos) {
+            if (output.getParentTransactionHash() == null)
+                return false;
+        }
+        return true;
+    }
+
+    private int unsignedLength(int inputIndex, int outputScriptLength) {
+        int length = VERSION.length + varIntSize(utxos.size());
+        for (int i = 0; i < utxos.size(); i++) {
+            int scriptLength = i == inputIndex ? utxos.get(i).getScriptBytes().length : 0;
+            length += OUTPOINT_LENGTH + varIntSize(scriptLength) + scriptLength + SEQUENCE.length;
+        }
+        return length + outputsLength(outputScriptLength) + HASH_CODE_TYPE.length;
+    }
+
+    private int signedLength(int outputScriptLength) {
+        return VERSION.length + varIntSize(utxos.size())
+                + utxos.size() * (OUTPOINT_LENGTH + SCRIPT_SIG_LENGTH + SEQUENCE.length)
+                + outputsLength(outputScriptLength) + HASH_CODE_TYPE.length;
+    }
+
+    /**
+     * Length of the outputs up to and including the lock time.
+     */
+    private static int outputsLength(int outputScriptLength) {
+        return 1 + SPEND_AMOUNT.length + varIntSize(outputScriptLength) + outputScriptLength + LOCK_TIME.length;
+    }
+
+    /**
+     * Writes the unsigned transaction for signing the given input, including hash code type, at
+     * the start of the buffer.
+     * Follows the steps in this answer: https://bitcoin.stackexchange.com/a/5241
+     * @return the length of the unsigned transaction.
+     */
+    private int writeUnsigned(ByteBuffer buffer, int inputIndex, byte[] outputScript) {
+        buffer.position(0);
+        buffer.put(VERSION);
+        writeVarInt(buffer, utxos.size());
+        for (int i = 0; i < utxos.size(); i++) {
+            TransactionOutput output = utxos.get(i);
+            writeOutpoint(buffer, output);
+            if (i == inputIndex) {
+                byte[] script = output.getScriptBytes();
+                writeVarInt(buffer, script.length);
+                buffer.put(script);
+            } else {
+                writeVarInt(buffer, 0);
+            }
+            buffer.put(SEQUENCE);
+        }
+        writeOutputs(buffer, outputScript);
+        buffer.put(HASH_CODE_TYPE);
+        return buffer.position();
+    }
+
+    private static void writeOutpoint(ByteBuffer buffer, TransactionOutput output) {
+        buffer.put(output.getParentTransactionHash().getReversedBytes());
+        buffer.putInt(Integer.reverseBytes(output.getIndex()));
+    }
+
+    /**
+     * Writes the single output with the redeem script and the lock time at the current position
+     * of the buffer.
+     */
+    private static void writeOutputs(ByteBuffer buffer, byte[] outputScript) {
+        buffer.put(OUTPUT_COUNT);
+        buffer.put(SPEND_AMOUNT);
+        writeVarInt(buffer, outputScript.length);
+        buffer.put(outputScript);
+        buffer.put(LOCK_TIME);
+    }
+
+    private static int varIntSize(long value) {
+        if (value < 0xFD)
+            return 1;
+        if (value <= 0xFFFF)
+            return 3;
+        if (value <= 0xFFFFFFFFL)
+            return 5;
+        return 9;
+    }
+
+    private static void writeVarInt(ByteBuffer buffer, long value) {
+        switch (varIntSize(value)) {
+            case 1:
+                buffer.put((byte) value);
+                break;
+            case 3:
+                buffer.put((byte) 0xFD);
+                buffer.putShort(Short.reverseBytes((short) value));
+                break;
+            case 5:
+                buffer.put((byte) 0xFE);
+                buffer.putInt(Integer.reverseBytes((int) value));
+                break;
+            default:
+                buffer.put((byte) 0xFF);
+                buffer.putLong(Long.reverseBytes(value));
+        }
+    }
+
+    /**
+     * Redeem script, copies the output script of the first UTXO and replaces the address.
+     * When several UTXOs are spent the asset quantity is replaced by the total quantity.
+     */
+    private byte[] buildOutputScript() {
+        byte[] script = utxo.getScriptBytes().clone();
+        System.arraycopy(this.destination.getHash160(), 0, script, DESTINATION_OFFSET, 20);
+        if (utxos.size() > 1) {
+            if (!canCombine(utxos))
+                throw new IllegalArgumentException("UTXOs cannot be spent into one output");
+            long quantity = 0;
+            for (TransactionOutput output : utxos) {
+                quantity += ByteBuffer.wrap(output.getScriptBytes(), ASSET_QUANTITY_OFFSET, 8)
+                        .order(ByteOrder.LITTLE_ENDIAN).getLong();
+            }
+            ByteBuffer.wrap(script, ASSET_QUANTITY_OFFSET, 8).order(ByteOrder.LITTLE_ENDIAN).putLong(quantity);
+        }
+        return script;
+    }
+
+    /**
+     * Check if the script is an asset transfer with the same script as the reference, apart from
+     * the address and the quantity.
+     */
+    private static boolean isSameAssetTransfer(byte[] reference, byte[] script) {
+        if (script.length != reference.length
+                || script.length < ASSET_QUANTITY_OFFSET + 8
+                || (script[ASSET_METADATA_PUSH_OFFSET] & 0xFF) < ASSET_METADATA_LENGTH)
+            return false;
+        for (int i = 0; i < ASSET_TRANSFER_PREFIX.length; i++) {
+            if (script[ASSET_METADATA_PUSH_OFFSET + 1 + i] != ASSET_TRANSFER_PREFIX[i])
+                return false;
+        }
+        for (int i = 0; i < script.length; i++) {
+            boolean address = i >= DESTINATION_OFFSET && i < DESTINATION_OFFSET + 20;
+            boolean quantity = i >= ASSET_QUANTITY_OFFSET && i < ASSET_QUANTITY_OFFSET + 8;
+            if (!address && !quantity && script[i] != reference[i])
+                return false;
+        }
+        return true;
+    }
+
     /**
      * Creates a byte array which contains all the element for a valid transaction.
      * Follows the steps in this answer: https://bitcoin.stackexchange.com/a/5241
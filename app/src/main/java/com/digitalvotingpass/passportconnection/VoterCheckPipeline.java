@@ -0,0 +1,281 @@
+package com.digitalvotingpass.passportconnection;
+
+import android.nfc.Tag;
+import android.nfc.TagLostException;
+import android.util.Log;
+
+import com.digitalvotingpass.blockchain.BlockChain;
+import com.digitalvotingpass.digitalvotingpass.DocumentData;
+import com.digitalvotingpass.digitalvotingpass.Voter;
+
+import org.bitcoinj.core.Asset;
+import org.bitcoinj.core.AssetBalance;
+import org.jmrtd.PassportService;
+
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Runs the check of one voter in stages: BAC, reading DG15, reading DG1, looking up the balance
+ * and signing the spend transactions. Losing the tag ends the check with a
+ * {@link TagLostException}.
+ * The card stages run on the calling thread, which should be a worker thread. As soon as the
+ * public key is read from DG15 the balance lookup is started on the lookup executor, so it runs
+ * while DG1 is still being read from the card.
+ */
+public class VoterCheckPipeline {
+    private static final String TAG = "VoterCheckPipeline";
+
+    public static final String STAGE_BAC = "bac";
+    public static final String STAGE_DG15 = "dg15";
+    public static final String STAGE_DG1 = "dg1";
+    public static final String STAGE_BALANCE = "balance";
+    public static final String STAGE_SIGN = "sign";
+
+    private final BlockChain blockChain;
+    private final Asset asset;
+    private final ExecutorService lookupExecutor;
+    private final DocumentSessionCache sessionCache;
+    private ProgressListener listener;
+    private volatile boolean cancelled = false;
+    private volatile PassportService openService;
+
+    /**
+     * Is told when a stage of the pipeline completed. Called on the thread running the pipeline.
+     */
+    public interface ProgressListener {
+        void onStageCompleted(String stage);
+    }
+
+    /**
+     * The data read from the document and the signed transactions of one voter.
+     */
+    public static class Result {
+        private final PublicKey pubKey;
+        private final Voter voter;
+        private final ArrayList<byte[]> signedTransactions;
+        private final Map<String, Long> timings;
+
+        Result(PublicKey pubKey, Voter voter, ArrayList<byte[]> signedTransactions, Map<String, Long> timings) {
+            this.pubKey = pubKey;
+            this.voter = voter;
+            this.signedTransactions = signedTransactions;
+            this.timings = timings;
+        }
+
+        public PublicKey getPubKey() {
+            return pubKey;
+        }
+
+        public Voter getVoter() {
+            return voter;
+        }
+
+        public ArrayList<byte[]> getSignedTransactions() {
+            return signedTransactions;
+        }
+
+        /**
+         * @return the duration in milliseconds of every stage, in order of completion.
+         */
+        public Map<String, Long> getTimings() {
+            return timings;
+        }
+    }
+
+    /**
+     * @param blockChain the blockchain to look up the balance in.
+     * @param asset the asset of the chosen election.
+     * @param lookupExecutor executor running the balance lookup next to the card stages.
+     * @param sessionCache cache of earlier reads of the same document, may be null.
+     */
+    public VoterCheckPipeline(BlockChain blockChain, Asset asset, ExecutorService lookupExecutor,
+                              DocumentSessionCache sessionCache) {
+        this.blockChain = blockChain;
+        this.asset = asset;
+        this.lookupExecutor = lookupExecutor;
+        this.sessionCache = sessionCache;
+    }
+
+    /**
+     * @param listener listener to be told about completed stages, may be null.
+     */
+    public void setProgressListener(ProgressListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Cancel the check, for example because the tag was lost or the activity is left.
+     * Closes the connection with the document, so a pending card command is aborted, and
+     * {@link #run(Tag, DocumentData)} ends with a {@link CancellationException}.
+     */
+    public void cancel() {
+        cancelled = true;
+        PassportService ps = openService;
+        if (ps != null) {
+            try {
+                ps.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Check the voter whose document is on the given tag. Blocks until all stages are done.
+     * @param tag the NFC tag of the document.
+     * @param documentData the data needed for BAC.
+     * @return the result of the check.
+     */
+    public Result run(Tag tag, DocumentData documentData) throws Exception {
+        Map<String, Long> timings = new LinkedHashMap<>();
+        long start = System.nanoTime();
+        long stageStart = start;
+
+        // Open a connection with the ID, return a PassportService object which holds the open connection
+        PassportConnection pcon = new PassportConnection();
+        checkCancelled();
+        PassportService ps = pcon.openService(tag);
+        // Known before BAC, so cancel() can abort BAC too
+        openService = ps;
+
+        Future<AssetBalance> balance = null;
+        try {
+            checkCancelled();
+            pcon.doBAC(ps, documentData);
+            stageStart = completeStage(timings, STAGE_BAC, stageStart);
+
+            // A retry for the same document only has to redo the reads that did not succeed
+            String documentNumber = documentData.getDocumentNumber();
+            DocumentSessionCache.Session session = sessionCache != null ? sessionCache.get(documentNumber) : null;
+
+            // Get public key from dg15
+            final PublicKey pubKey = session != null ? session.getPubKey() : pcon.getAAPublicKey(ps);
+            if (session == null && sessionCache != null)
+                sessionCache.put(documentNumber, pubKey, null);
+            stageStart = completeStage(timings, STAGE_DG15, stageStart);
+
+            // Look up the balance while the card is busy with dg1
+            final long lookupStart = System.nanoTime();
+            final Map<String, Long> lookupTimings = timings;
+            balance = lookupExecutor.submit(new Callable<AssetBalance>() {
+                @Override
+                public AssetBalance call() throws Exception {
+                    try {
+                        return blockChain.getVotingPassBalance(pubKey, asset);
+                    } finally {
+                        record(lookupTimings, STAGE_BALANCE, lookupStart);
+                    }
+                }
+            });
+
+            // Get voter information from dg1
+            Voter voter = session != null ? session.getVoter() : null;
+            if (voter == null) {
+                voter = pcon.getVoter(ps);
+                if (sessionCache != null)
+                    sessionCache.put(documentNumber, pubKey, voter);
+            }
+            stageStart = completeStage(timings, STAGE_DG1, stageStart);
+
+            AssetBalance assetBalance = getLookupResult(balance);
+            checkCancelled();
+            stageStart = System.nanoTime();
+            ArrayList<byte[]> signedTransactions = blockChain.getSpendUtxoTransactions(pubKey, assetBalance, pcon);
+            completeStage(timings, STAGE_SIGN, stageStart);
+
+            // The voter is done, the data is not needed anymore
+            if (sessionCache != null)
+                sessionCache.remove(documentNumber);
+
+            Log.i(TAG, "Voter checked in " + (System.nanoTime() - start) / 1000000 + " ms, stages: "
+                    + timings + ", " + pcon.getSignCount() + " signatures in " + pcon.getSignTimeMillis() + " ms");
+            return new Result(pubKey, voter, signedTransactions, timings);
+        } catch (Exception e) {
+            // A failing card command after cancel() is caused by the closed connection
+            if (cancelled)
+                throw new CancellationException("Voter check cancelled");
+            if (isTagLost(e))
+                throw new TagLostException("Tag was lost during the voter check");
+            throw e;
+        } finally {
+            if (balance != null)
+                balance.cancel(true);
+            openService = null;
+            try {
+                ps.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Scuba turns the {@link TagLostException} of the NFC link into a
+     * {@link net.sf.scuba.smartcards.CardServiceException} with its message, which JMRTD may wrap
+     * again, so both the causes and their messages are checked.
+     * @return whether the exception was caused by losing the tag.
+     */
+    static boolean isTagLost(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TagLostException)
+                return true;
+            if (cause.toString().toLowerCase().contains("tag was lost"))
+                return true;
+        }
+        return false;
+    }
+
+    private void checkCancelled() {
+        if (cancelled)
+            throw new CancellationException("Voter check cancelled");
+    }
+
+    /**
+     * Record the duration of a stage and tell the listener.
+     * @return the current time, the start of the next stage.
+     */
+    private long completeStage(Map<String, Long> timings, String stage, long stageStart) {
+        checkCancelled();
+        long now = record(timings, stage, stageStart);
+        if (listener != null)
+            listener.onStageCompleted(stage);
+        return now;
+    }
+
+    /**
+     * Wait for the balance lookup and rethrow its exception, if any.
+     */
+    private static AssetBalance getLookupResult(Future<AssetBalance> balance) throws Exception {
+        try {
+            return balance.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+
+    /**
+     * Store the duration of a stage.
+     * @return the current time, the start of the next stage.
+     */
+    private static long record(Map<String, Long> timings, String stage, long stageStart) {
+        long now = System.nanoTime();
+        synchronized (timings) {
+            timings.put(stage, (now - stageStart) / 1000000);
+        }
+        return now;
+    }
+}
@@ -0,0 +1,205 @@
+package com.digitalvotingpass.utilities;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Extracts assets to files, for libraries that can only read a file. An asset is written to a
+ * temporary file next to the target, synced to storage and then renamed to the target, so a
+ * crash while extracting never leaves a partial file under the target name. The size and
+ * SHA-256 of an extracted file are checked against the manifest in the assets, before it is
+ * renamed and again before an earlier extracted file is used.
+ */
+public class AssetExtractor {
+    public static final String MANIFEST = "assets.manifest";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The size and hash of an asset in the manifest.
+     */
+    public static class Entry {
+        private final long size;
+        private final String sha256;
+
+        Entry(long size, String sha256) {
+            this.size = size;
+            this.sha256 = sha256;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+    }
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * @param manifest lines with the name, size and SHA-256 in hex of an asset, separated by
+     *                 whitespace. Empty lines and lines starting with # are left out. Is closed.
+     */
+    public AssetExtractor(InputStream manifest) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(manifest, "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\s+");
+                if (fields.length != 3) {
+                    throw new IOException("Invalid manifest line: " + line);
+                }
+                try {
+                    entries.put(fields[0], new Entry(Long.parseLong(fields[1]), fields[2].toLowerCase(Locale.US)));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid size in manifest line: " + line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * @return the entry of the asset, or null when it is not in the manifest.
+     */
+    public Entry get(String name) {
+        return entries.get(name);
+    }
+
+    /**
+     * @return whether the file has the size and hash of the asset in the manifest. The hash is
+     * only calculated when the size is right.
+     */
+    public boolean isIntact(String name, File file) throws IOException {
+        Entry entry = getEntry(name);
+        return file.isFile() && file.length() == entry.size && entry.sha256.equals(sha256(file));
+    }
+
+    /**
+     * Extract the asset to the file, replacing the file when it exists.
+     * @param asset the content of the asset, is closed.
+     * @throws IOException when writing fails or the content does not match the manifest, the file
+     * is then left as it was.
+     */
+    public void extract(String name, InputStream asset, File file) throws IOException {
+        copy(asset, file, getEntry(name));
+    }
+
+    private Entry getEntry(String name) throws IOException {
+        Entry entry = entries.get(name);
+        if (entry == null) {
+            throw new IOException(name + " is not in the manifest");
+        }
+        return entry;
+    }
+
+    /**
+     * Copy the stream to the file through a temporary file that is synced and renamed to the file.
+     * Creates the parent folders of the file.
+     * @param in is closed
+     * @param expected the size and hash the content should have, null to not check it
+     * @return the SHA-256 of the content in hex
+     */
+    public static String copy(InputStream in, File file, Entry expected) throws IOException {
+        File folder = file.getAbsoluteFile().getParentFile();
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            in.close();
+            throw new IOException("Cannot create " + folder);
+        }
+        File temporary = new File(folder, file.getName() + TEMPORARY_EXTENSION);
+        MessageDigest digest = newSha256();
+        long size = 0;
+        boolean renamed = false;
+        ReadableByteChannel source = Channels.newChannel(in);
+        FileOutputStream out = new FileOutputStream(temporary);
+        try {
+            FileChannel target = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (source.read(buffer) != -1) {
+                buffer.flip();
+                size += buffer.remaining();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                buffer.clear();
+            }
+            // On storage before the rename makes it visible
+            target.force(true);
+            out.close();
+            String sha256 = toHex(digest.digest());
+            if (expected != null && (size != expected.size || !sha256.equals(expected.sha256))) {
+                throw new IOException("Extracted " + file.getName() + " has size " + size + " and SHA-256 "
+                        + sha256 + ", expected " + expected.size + " and " + expected.sha256);
+            }
+            if (!temporary.renameTo(file)) {
+                throw new IOException("Cannot rename " + temporary + " to " + file);
+            }
+            renamed = true;
+            return sha256;
+        } finally {
+            source.close();
+            out.close();
+            if (!renamed) {
+                temporary.delete();
+            }
+        }
+    }
+
+    /**
+     * @return the SHA-256 of the content of the file in hex.
+     */
+    public static String sha256(File file) throws IOException {
+        MessageDigest digest = newSha256();
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            in.close();
+        }
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,149 @@
+package com.digitalvotingpass.utilities;
+
+import org.bitcoinj.core.Base58;
+import org.spongycastle.crypto.digests.RIPEMD160Digest;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Byte level implementation of the MultiChain address derivation for one network.
+ * See {@link <a href="http://www.multichain.com/developers/address-key-format/">MultiChain Documentation</a>}
+ * The version and checksum bytes of the network are decoded once, and every thread reuses its own
+ * digests and scratch buffers, so deriving an address does not build any intermediate Strings.
+ * Produces the same addresses as the String based steps in {@link MultiChainAddressGenerator}.
+ */
+public class MultiChainAddressDeriver {
+    private static final int SHA256_LENGTH = 32;
+    private static final int RIPEMD160_LENGTH = 20;
+    private static final int CHECKSUM_LENGTH = 4;
+    private static final int VERSION_PARTS = 4;
+
+    private final byte[][] version;
+    private final byte[] addressChecksum;
+    private final int payloadLength;
+
+    private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch(payloadLength);
+        }
+    };
+
+    /**
+     * @param version the address-pubkeyhash-version of the chain, split in four hex parts.
+     * @param addressChecksum the address-checksum-value of the chain in hex.
+     */
+    public MultiChainAddressDeriver(String[] version, String addressChecksum) {
+        if (version == null || version.length != VERSION_PARTS)
+            throw new IllegalArgumentException("Version length != 4");
+        this.version = new byte[VERSION_PARTS][];
+        int length = RIPEMD160_LENGTH + CHECKSUM_LENGTH;
+        for (int i = 0; i < VERSION_PARTS; i++) {
+            this.version[i] = Util.hexStringToByteArray(version[i]);
+            length += this.version[i].length;
+        }
+        this.payloadLength = length;
+        this.addressChecksum = Util.hexStringToByteArray(addressChecksum);
+        if (this.addressChecksum.length < CHECKSUM_LENGTH)
+            throw new IllegalArgumentException("Address checksum shorter than 4 bytes");
+    }
+
+    /**
+     * Converts a given public key to a valid MultiChain address.
+     * @param pubKey byte array containing the public key
+     * @return String representing the corresponding address.
+     */
+    public String getPublicAddress(byte[] pubKey) {
+        return getPublicAddress(pubKey, 0, pubKey.length);
+    }
+
+    /**
+     * Converts a public key stored in a part of a byte array to a valid MultiChain address.
+     * @param src byte array containing the public key
+     * @param offset start of the public key in src
+     * @param length length of the public key
+     * @return String representing the corresponding address.
+     */
+    public String getPublicAddress(byte[] src, int offset, int length) {
+        return Base58.encode(writeAddressBytes(src, offset, length, scratch.get()));
+    }
+
+    /**
+     * Computes the binary address (before Base58 encoding) of a public key into {@code out}.
+     * @param src byte array containing the public key
+     * @param offset start of the public key in src
+     * @param length length of the public key
+     * @param out array of at least {@link #getAddressLength()} bytes receiving the address
+     */
+    public void getAddressBytes(byte[] src, int offset, int length, byte[] out) {
+        byte[] payload = writeAddressBytes(src, offset, length, scratch.get());
+        System.arraycopy(payload, 0, out, 0, payloadLength);
+    }
+
+    /**
+     * @return the length in bytes of a binary address of this network.
+     */
+    public int getAddressLength() {
+        return payloadLength;
+    }
+
+    private byte[] writeAddressBytes(byte[] src, int offset, int length, Scratch s) {
+        try {
+            // Step 3
+            s.sha256.reset();
+            s.sha256.update(src, offset, length);
+            s.sha256.digest(s.hash, 0, SHA256_LENGTH);
+
+            // Step 4
+            s.ripemd.reset();
+            s.ripemd.update(s.hash, 0, SHA256_LENGTH);
+            s.ripemd.doFinal(s.ripemdHash, 0);
+
+            // Step 5, interleave the version bytes with the ripemd hash
+            int pos = 0;
+            for (int i = 0; i < VERSION_PARTS; i++) {
+                System.arraycopy(version[i], 0, s.payload, pos, version[i].length);
+                pos += version[i].length;
+                System.arraycopy(s.ripemdHash, i * 5, s.payload, pos, 5);
+                pos += 5;
+            }
+
+            // Step 6 and 7
+            s.sha256.update(s.payload, 0, pos);
+            s.sha256.digest(s.hash, 0, SHA256_LENGTH);
+            s.sha256.update(s.hash, 0, SHA256_LENGTH);
+            s.sha256.digest(s.hash, 0, SHA256_LENGTH);
+
+            // Step 8, 9 and 10
+            for (int i = 0; i < CHECKSUM_LENGTH; i++) {
+                s.payload[pos + i] = (byte) (s.hash[i] ^ addressChecksum[i]);
+            }
+            return s.payload;
+        } catch (DigestException e) {
+            // cannot happen, the output buffer always fits a SHA-256 digest
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Digests and buffers owned by a single thread.
+     */
+    private static class Scratch {
+        private final MessageDigest sha256;
+        private final RIPEMD160Digest ripemd = new RIPEMD160Digest();
+        private final byte[] hash = new byte[SHA256_LENGTH];
+        private final byte[] ripemdHash = new byte[RIPEMD160_LENGTH];
+        private final byte[] payload;
+
+        private Scratch(int payloadLength) {
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            payload = new byte[payloadLength];
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.digitalvotingpass.utilities;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Derives MultiChain addresses for large numbers of public keys, for example to check a complete
+ * voter roll against the chain. The work is split over the cores with a {@link ForkJoinPool} and
+ * every address is handed to an {@link AddressSink} as soon as it is derived.
+ */
+public class MultiChainBatchAddressGenerator {
+    /**
+     * Number of keys below which a task is no longer split.
+     */
+    static final int SPLIT_THRESHOLD = 256;
+
+    /**
+     * Number of keys read from an iterator before they are derived in parallel.
+     */
+    static final int CHUNK_SIZE = 4096;
+
+    private final MultiChainAddressDeriver deriver;
+    private final ForkJoinPool pool;
+
+    /**
+     * Receives derived addresses. Called concurrently from the worker threads, so implementations
+     * must be thread safe. Addresses are not delivered in input order, use the index instead.
+     */
+    public interface AddressSink {
+        void onAddress(long index, byte[] pubKey, String address);
+    }
+
+    /**
+     * Create a batch generator using all available cores.
+     * @param version the address-pubkeyhash-version of the chain, split in four hex parts.
+     * @param addressChecksum the address-checksum-value of the chain in hex.
+     */
+    public MultiChainBatchAddressGenerator(String[] version, String addressChecksum) {
+        this(new MultiChainAddressDeriver(version, addressChecksum),
+                new ForkJoinPool(Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param deriver the deriver for the chain of the keys.
+     * @param pool the pool the work is executed in.
+     */
+    public MultiChainBatchAddressGenerator(MultiChainAddressDeriver deriver, ForkJoinPool pool) {
+        this.deriver = deriver;
+        this.pool = pool;
+    }
+
+    /**
+     * Derive the addresses for all raw public keys in the list. Returns when all addresses have
+     * been passed to the sink.
+     * @param pubKeys raw public keys.
+     * @param sink receives the derived addresses, the index is the position in {@code pubKeys}.
+     */
+    public void derive(List<byte[]> pubKeys, AddressSink sink) {
+        derive(pubKeys, 0, sink);
+    }
+
+    /**
+     * Derive the addresses for all raw public keys returned by the iterator. Keys are read in
+     * chunks, so the complete input never has to be held in memory. Returns when all addresses
+     * have been passed to the sink.
+     * @param pubKeys iterator over raw public keys.
+     * @param sink receives the derived addresses, the index is the position in the iteration.
+     */
+    public void derive(Iterator<byte[]> pubKeys, AddressSink sink) {
+        long offset = 0;
+        List<byte[]> chunk = new ArrayList<>(CHUNK_SIZE);
+        while (pubKeys.hasNext()) {
+            chunk.add(pubKeys.next());
+            if (chunk.size() == CHUNK_SIZE) {
+                derive(chunk, offset, sink);
+                offset += chunk.size();
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            derive(chunk, offset, sink);
+        }
+    }
+
+    /**
+     * Stop the worker threads of the pool.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private void derive(List<byte[]> pubKeys, long offset, AddressSink sink) {
+        pool.invoke(new DeriveTask(pubKeys, 0, pubKeys.size(), offset, sink));
+    }
+
+    private class DeriveTask extends RecursiveAction {
+        private final List<byte[]> pubKeys;
+        private final int from;
+        private final int to;
+        private final long offset;
+        private final AddressSink sink;
+
+        private DeriveTask(List<byte[]> pubKeys, int from, int to, long offset, AddressSink sink) {
+            this.pubKeys = pubKeys;
+            this.from = from;
+            this.to = to;
+            this.offset = offset;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    byte[] pubKey = pubKeys.get(i);
+                    sink.onAddress(offset + i, pubKey, deriver.getPublicAddress(pubKey));
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new DeriveTask(pubKeys, from, middle, offset, sink),
+                        new DeriveTask(pubKeys, middle, to, offset, sink));
+            }
+        }
+    }
+}
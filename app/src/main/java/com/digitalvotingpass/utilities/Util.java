@@ -7,16 +7,10 @@ import android.graphics.Color;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
 import android.support.v7.widget.Toolbar;
-import android.util.Log;
 
 import com.digitalvotingpass.digitalvotingpass.R;
 import com.readystatesoftware.systembartint.SystemBarTintManager;
 
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -58,38 +52,6 @@ public class Util {
         tintManager.setTintColor(Color.parseColor("#10000000"));
     }
 
-    /**
-     * Copies an InputStream into a File.
-     * This is used to copy an InputStream from the assets folder to a file in the FileSystem.
-     * Creates nay non-existant parent folders to f.
-     *
-     * @param is InputStream to be copied.
-     * @param f  File to copy data to.
-     */
-    public static void copyAssetsFile(InputStream is, File f) throws IOException {
-        if (!f.exists()) {
-            if (!f.getParentFile().mkdirs()) { //getParent because otherwise it creates a folder with that filename, we just need the dirs
-                Log.e("Util", "Cannot create path!");
-            }
-        }
-        OutputStream os = new FileOutputStream(f, true);
-
-        final int buffer_size = 1024 * 1024;
-        try {
-            byte[] bytes = new byte[buffer_size];
-            for (; ; ) {
-                int count = is.read(bytes, 0, buffer_size);
-                if (count == -1)
-                    break;
-                os.write(bytes, 0, count);
-            }
-            is.close();
-            os.close();
-        } catch (Exception ex) {
-            ex.printStackTrace();
-        }
-    }
-
     /**
      * Method for converting a hexString to a byte array.
      * This method is used for signing transaction hashes (which are in hex).
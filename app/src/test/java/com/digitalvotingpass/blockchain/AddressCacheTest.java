@@ -0,0 +1,70 @@
+package com.digitalvotingpass.blockchain;
+
+import org.bitcoinj.core.Address;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class AddressCacheTest {
+    @Mock
+    private Address address1;
+    @Mock
+    private Address address2;
+    @Mock
+    private Address address3;
+    @Rule
+    public MockitoRule mockitoRule = MockitoJUnit.rule();
+
+    private AddressCache cache;
+    private byte[] key1 = new byte[]{0x01, 0x02, 0x03};
+    private byte[] key2 = new byte[]{0x04, 0x05, 0x06};
+    private byte[] key3 = new byte[]{0x07, 0x08, 0x09};
+
+    @Before
+    public void setUp() {
+        cache = new AddressCache(2);
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        assertNull(cache.get(key1));
+        cache.put(key1, address1);
+        assertSame(address1, cache.get(new byte[]{0x01, 0x02, 0x03}));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testKeyIsCopied() {
+        byte[] key = key1.clone();
+        cache.put(key, address1);
+        key[0] = 0x7F;
+        assertSame(address1, cache.get(key1));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        cache.put(key1, address1);
+        cache.put(key2, address2);
+        // touch key1 so key2 becomes the least recently used entry
+        cache.get(key1);
+        cache.put(key3, address3);
+
+        assertEquals(2, cache.size());
+        assertSame(address1, cache.get(key1));
+        assertNull(cache.get(key2));
+        assertSame(address3, cache.get(key3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new AddressCache(0);
+    }
+}
@@ -0,0 +1,44 @@
+package com.digitalvotingpass.ocrscanner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class FramePoolTest {
+
+    @Test
+    public void testFramesAreReused() {
+        FramePool pool = new FramePool(2, 100);
+        LuminanceFrame frame = pool.acquire();
+        assertEquals(100, frame.getData().length);
+        pool.release(frame);
+        assertSame(frame, pool.acquire());
+        assertEquals(2, pool.getAcquired());
+        assertEquals(0, pool.getMisses());
+    }
+
+    @Test
+    public void testMissWhenEmpty() {
+        FramePool pool = new FramePool(2, 100);
+        LuminanceFrame first = pool.acquire();
+        LuminanceFrame second = pool.acquire();
+        LuminanceFrame third = pool.acquire();
+        assertNotSame(first, third);
+        assertNotSame(second, third);
+        assertEquals(1, pool.getMisses());
+        assertEquals(0, pool.getAvailable());
+
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        // the extra frame is not kept
+        assertEquals(2, pool.getAvailable());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidSize() {
+        new FramePool(0, 100);
+    }
+}
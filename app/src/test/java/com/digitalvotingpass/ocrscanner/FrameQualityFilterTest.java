@@ -0,0 +1,82 @@
+package com.digitalvotingpass.ocrscanner;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameQualityFilterTest {
+    private static final int WIDTH = 480;
+    private static final int HEIGHT = 60;
+
+    private FrameQualityFilter filter;
+
+    @Before
+    public void setUp() {
+        filter = new FrameQualityFilter(100, 20);
+    }
+
+    /**
+     * Frame of black bars on white, blurred horizontally over the radius.
+     */
+    private static LuminanceFrame bars(int barWidth, int blurRadius) {
+        byte[] row = new byte[WIDTH];
+        for (int x = 0; x < WIDTH; x++) {
+            int total = 0;
+            int count = 0;
+            for (int i = x - blurRadius; i <= x + blurRadius; i++) {
+                if (i >= 0 && i < WIDTH) {
+                    total += (i / barWidth) % 2 == 0 ? 0 : 255;
+                    count++;
+                }
+            }
+            row[x] = (byte) (total / count);
+        }
+        LuminanceFrame frame = new LuminanceFrame();
+        frame.setSize(WIDTH, HEIGHT);
+        for (int y = 0; y < HEIGHT; y++) {
+            System.arraycopy(row, 0, frame.getData(), y * WIDTH, WIDTH);
+        }
+        return frame;
+    }
+
+    @Test
+    public void testSharpFrameAccepted() {
+        // Bars like the strokes of characters
+        assertTrue(filter.accept(bars(4, 0)));
+        assertTrue(filter.getSharpness() > 100);
+        assertEquals(1, filter.getChecked());
+        assertEquals(0, filter.getSkipRate(), 0);
+    }
+
+    @Test
+    public void testBlurryFrameSkipped() {
+        // Enough contrast, but the edges are smeared out
+        assertFalse(filter.accept(bars(40, 12)));
+        assertTrue(filter.getContrast() >= 20);
+        assertEquals(1, filter.getBlurry());
+        assertEquals(0, filter.getLowContrast());
+    }
+
+    @Test
+    public void testEmptyFrameSkipped() {
+        LuminanceFrame frame = new LuminanceFrame();
+        frame.setSize(WIDTH, HEIGHT);
+        assertFalse(filter.accept(frame));
+        assertEquals(0, filter.getContrast(), 0);
+        assertEquals(0, filter.getSharpness(), 0);
+        assertEquals(1, filter.getLowContrast());
+
+        filter.accept(bars(4, 0));
+        assertEquals(0.5, filter.getSkipRate(), 0);
+    }
+
+    @Test
+    public void testTinyFrame() {
+        LuminanceFrame frame = new LuminanceFrame();
+        frame.setSize(2, 1);
+        assertFalse(filter.accept(frame));
+    }
+}
@@ -0,0 +1,117 @@
+package com.digitalvotingpass.ocrscanner;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FrameSchedulerTest {
+    private FramePool pool;
+    private FrameScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        pool = new FramePool(4, 0);
+        scheduler = new FrameScheduler(pool, 1);
+    }
+
+    @Test
+    public void testLatestFrameWins() throws Exception {
+        LuminanceFrame first = scheduler.acquire();
+        LuminanceFrame second = scheduler.acquire();
+        scheduler.offer(first);
+        scheduler.offer(second);
+        assertEquals(1, scheduler.getDropped());
+        assertEquals(3, pool.getAvailable());
+        assertSame(second, scheduler.take());
+    }
+
+    @Test
+    public void testTakeWaitsForFrame() throws Exception {
+        final AtomicReference<LuminanceFrame> taken = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    taken.set(scheduler.take());
+                } catch (InterruptedException ignored) {
+                }
+                done.countDown();
+            }
+        });
+        worker.start();
+        while (!scheduler.isWaiting()) {
+            Thread.sleep(1);
+        }
+        LuminanceFrame frame = scheduler.acquire();
+        scheduler.offer(frame);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertSame(frame, taken.get());
+        assertFalse(scheduler.isWaiting());
+    }
+
+    @Test
+    public void testCloseWakesWorkers() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (scheduler.take() == null)
+                        done.countDown();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        worker.start();
+        while (!scheduler.isWaiting()) {
+            Thread.sleep(1);
+        }
+        scheduler.close();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPutBack() throws Exception {
+        LuminanceFrame frame = scheduler.acquire();
+        scheduler.offer(frame);
+        assertSame(frame, scheduler.take());
+        scheduler.putBack(frame);
+        assertSame(frame, scheduler.take());
+
+        // A newer frame arrived, the frame that is put back is dropped
+        LuminanceFrame newer = scheduler.acquire();
+        scheduler.offer(newer);
+        scheduler.putBack(frame);
+        assertEquals(3, pool.getAvailable());
+        assertSame(newer, scheduler.take());
+
+        scheduler.close();
+        scheduler.putBack(newer);
+        assertEquals(4, pool.getAvailable());
+    }
+
+    @Test
+    public void testClosedSchedulerReturnsFrames() throws Exception {
+        scheduler.offer(scheduler.acquire());
+        scheduler.close();
+        assertEquals(4, pool.getAvailable());
+        scheduler.offer(scheduler.acquire());
+        assertEquals(4, pool.getAvailable());
+        assertNull(scheduler.take());
+
+        scheduler.open();
+        LuminanceFrame frame = scheduler.acquire();
+        scheduler.offer(frame);
+        assertSame(frame, scheduler.take());
+    }
+}
@@ -0,0 +1,96 @@
+package com.digitalvotingpass.ocrscanner;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class LuminanceFrameTest {
+    /**
+     * Camera image of 4 x 3 pixels:
+     * 1 2 3 4
+     * 5 6 7 8
+     * 9 10 11 12
+     */
+    private static final byte[] IMAGE = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12};
+
+    private static byte[] pixels(LuminanceFrame frame) {
+        byte[] pixels = new byte[frame.getWidth() * frame.getHeight()];
+        System.arraycopy(frame.getData(), 0, pixels, 0, pixels.length);
+        return pixels;
+    }
+
+    @Test
+    public void testNoRotation() {
+        LuminanceFrame frame = new LuminanceFrame();
+        frame.cropFrom(ByteBuffer.wrap(IMAGE), 4, 1, 4, 3, 0, 1, 1, 3, 2);
+        assertEquals(3, frame.getWidth());
+        assertEquals(2, frame.getHeight());
+        assertArrayEquals(new byte[]{6, 7, 8, 10, 11, 12}, pixels(frame));
+    }
+
+    @Test
+    public void testRotation90() {
+        // Upright image:
+        // 9 5 1
+        // 10 6 2
+        // 11 7 3
+        // 12 8 4
+        LuminanceFrame frame = new LuminanceFrame();
+        frame.cropFrom(ByteBuffer.wrap(IMAGE), 4, 1, 4, 3, 90, 0, 0, 3, 4);
+        assertArrayEquals(new byte[]{9, 5, 1, 10, 6, 2, 11, 7, 3, 12, 8, 4}, pixels(frame));
+        frame.cropFrom(ByteBuffer.wrap(IMAGE), 4, 1, 4, 3, 90, 1, 2, 2, 2);
+        assertArrayEquals(new byte[]{7, 3, 8, 4}, pixels(frame));
+    }
+
+    @Test
+    public void testRotation180() {
+        LuminanceFrame frame = new LuminanceFrame();
+        frame.cropFrom(ByteBuffer.wrap(IMAGE), 4, 1, 4, 3, 180, 0, 0, 4, 3);
+        assertArrayEquals(new byte[]{12, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 1}, pixels(frame));
+    }
+
+    @Test
+    public void testRotation270() {
+        // Upright image:
+        // 4 8 12
+        // 3 7 11
+        // 2 6 10
+        // 1 5 9
+        LuminanceFrame frame = new LuminanceFrame();
+        frame.cropFrom(ByteBuffer.wrap(IMAGE), 4, 1, 4, 3, 270, 0, 0, 3, 4);
+        assertArrayEquals(new byte[]{4, 8, 12, 3, 7, 11, 2, 6, 10, 1, 5, 9}, pixels(frame));
+        frame.cropFrom(ByteBuffer.wrap(IMAGE), 4, 1, 4, 3, 270, 1, 1, 2, 1);
+        assertArrayEquals(new byte[]{7, 11}, pixels(frame));
+    }
+
+    @Test
+    public void testRowAndPixelStride() {
+        // Same image with two bytes per pixel and padding at the end of every row
+        byte[] padded = new byte[3 * 10];
+        for (int y = 0; y < 3; y++)
+            for (int x = 0; x < 4; x++)
+                padded[y * 10 + x * 2] = IMAGE[y * 4 + x];
+        LuminanceFrame frame = new LuminanceFrame();
+        frame.cropFrom(ByteBuffer.wrap(padded), 10, 2, 4, 3, 0, 1, 1, 3, 2);
+        assertArrayEquals(new byte[]{6, 7, 8, 10, 11, 12}, pixels(frame));
+        frame.cropFrom(ByteBuffer.wrap(padded), 10, 2, 4, 3, 90, 0, 0, 3, 4);
+        assertArrayEquals(new byte[]{9, 5, 1, 10, 6, 2, 11, 7, 3, 12, 8, 4}, pixels(frame));
+    }
+
+    @Test
+    public void testBufferIsReused() {
+        LuminanceFrame frame = new LuminanceFrame(12);
+        byte[] data = frame.getData();
+        frame.cropFrom(ByteBuffer.wrap(IMAGE), 4, 1, 4, 3, 90, 0, 0, 3, 4);
+        frame.cropFrom(ByteBuffer.wrap(IMAGE), 4, 1, 4, 3, 0, 0, 0, 2, 2);
+        assertEquals(data, frame.getData());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCropOutsideImage() {
+        new LuminanceFrame().cropFrom(ByteBuffer.wrap(IMAGE), 4, 1, 4, 3, 90, 0, 0, 4, 3);
+    }
+}
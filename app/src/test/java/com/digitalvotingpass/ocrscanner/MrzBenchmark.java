@@ -0,0 +1,53 @@
+package com.digitalvotingpass.ocrscanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the String based MRZ parser with {@link Mrz} on the text of an OCR result.
+ * Run with the main method from the unit test classpath, add -prof gc to see the allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MrzBenchmark {
+    /**
+     * A valid passport, a passport with a misread date of birth and an ID card with a third line.
+     */
+    @Param({
+            "P<NLDBLEH<<JAN<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<\nGHD777O861NLD9005226M18062657542648264<<<<04\n",
+            "P<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<<<<<<<<<\nL898902C<3UTO6918061F9406236ZE184226B<<<<<14\n",
+            "I<NLDCI00383F12999999990<<<<<8\n7208148F1108268NLD<<<<<<<<<<<2\nVAN<DER<STEEN<<MARIANNE<LOUISE\n"})
+    public String text;
+
+    @Benchmark
+    public boolean legacyParser() {
+        return new LegacyMrz(text).valid();
+    }
+
+    @Benchmark
+    public boolean charParser() {
+        return new Mrz(text).valid();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(MrzBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
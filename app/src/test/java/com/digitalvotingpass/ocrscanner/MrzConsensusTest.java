@@ -0,0 +1,82 @@
+package com.digitalvotingpass.ocrscanner;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class MrzConsensusTest {
+    private static final String LINE_1 = "P<NLDBLEH<<JAN<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<";
+    private static final String LINE_2 = "GHD777O861NLD9005226M18062657542648264<<<<04";
+
+    private MrzConsensus consensus;
+
+    @Before
+    public void setUp() {
+        consensus = new MrzConsensus();
+    }
+
+    private static MrzReading reading(float confidence, String... lines) {
+        MrzReading reading = new MrzReading();
+        for (String line : lines) {
+            reading.addLine();
+            for (char c : line.toCharArray()) {
+                reading.addCharacter(c, confidence);
+            }
+        }
+        return reading;
+    }
+
+    private static String replace(String line, int position, char c) {
+        return line.substring(0, position) + c + line.substring(position + 1);
+    }
+
+    @Test
+    public void testValidReading() {
+        Mrz mrz = consensus.add(reading(90, LINE_1, LINE_2));
+        assertNotNull(mrz);
+        assertEquals("GHD777O86", mrz.getPrettyData().getDocumentNumber());
+    }
+
+    @Test
+    public void testErrorsInDifferentFrames() {
+        // Every frame has another misread character
+        assertNull(consensus.add(reading(80, LINE_1, replace(LINE_2, 14, '8'))));
+        assertNull(consensus.add(reading(80, LINE_1, replace(LINE_2, 22, 'Z'))));
+        assertNotNull(consensus.add(reading(80, LINE_1, replace(LINE_2, 30, 'B'))));
+        assertEquals(3, consensus.getReadings());
+    }
+
+    @Test
+    public void testConfidenceWeighsVotes() {
+        assertNull(consensus.add(reading(90, LINE_1, replace(LINE_2, 14, '8'))));
+        // A less confident read of the right character does not win at once
+        assertNull(consensus.add(reading(50, LINE_1, LINE_2)));
+        assertNotNull(consensus.add(reading(50, LINE_1, LINE_2)));
+    }
+
+    @Test
+    public void testLinesOfWrongLengthIgnored() {
+        assertNull(consensus.add(reading(90, LINE_1, LINE_2.substring(1))));
+        assertEquals(LINE_1 + "\n", consensus.getText());
+        assertNotNull(consensus.add(reading(90, LINE_1 + "<", LINE_2)));
+    }
+
+    @Test
+    public void testNewDocumentStartsOver() {
+        consensus.add(reading(90, LINE_1, replace(LINE_2, 14, '8')));
+        String id1 = "I<NLDCI00383F12999999990<<<<<8";
+        String id2 = "7208148F1108268NLD<<<<<<<<<<<2";
+        assertNotNull(consensus.add(reading(10, id1, id2)));
+        assertEquals(1, consensus.getResets());
+    }
+
+    @Test
+    public void testClear() {
+        consensus.add(reading(90, LINE_1, replace(LINE_2, 14, '8')));
+        consensus.clear();
+        assertEquals("", consensus.getText());
+    }
+}
@@ -0,0 +1,117 @@
+package com.digitalvotingpass.ocrscanner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MrzCorrectorTest {
+    private static final String PASSPORT_1 = "P<NLDBLEH<<JAN<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<";
+    private static final String PASSPORT_2 = "GHD777O861NLD9005226M18062657542648264<<<<04";
+    private static final String PASSPORT = PASSPORT_1 + "\n" + PASSPORT_2;
+    private static final String ID_1 = "I<NLDCI00383F12999999990<<<<<8";
+    private static final String ID_2 = "7208148F1108268NLD<<<<<<<<<<<2";
+    private static final String ID = ID_1 + "\n" + ID_2;
+
+    private static String replace(String line, int position, String characters) {
+        return line.substring(0, position) + characters + line.substring(position + characters.length());
+    }
+
+    /**
+     * Correct the lines in place like {@link Mrz} does.
+     * @return the corrected lines, separated by a newline.
+     */
+    private static String correct(String first, String second) {
+        return correct(first, second, MrzCorrector.MAX_CANDIDATES);
+    }
+
+    private static String correct(String first, String second, int maxCandidates) {
+        char[] firstLine = first.toCharArray();
+        char[] secondLine = second.toCharArray();
+        MrzCorrector.correct(firstLine, secondLine, maxCandidates);
+        return new String(firstLine) + "\n" + new String(secondLine);
+    }
+
+    @Test
+    public void testValidUnchanged() {
+        assertFalse(MrzCorrector.correct(PASSPORT_1.toCharArray(), PASSPORT_2.toCharArray()));
+        assertFalse(MrzCorrector.correct(ID_1.toCharArray(), ID_2.toCharArray()));
+        assertEquals(PASSPORT, correct(PASSPORT_1, PASSPORT_2));
+        assertEquals(ID, correct(ID_1, ID_2));
+    }
+
+    @Test
+    public void testLettersInDates() {
+        char[] first = PASSPORT_1.toCharArray();
+        char[] second = replace(PASSPORT_2, 13, "9OO5ZZ6").toCharArray();
+        assertTrue(MrzCorrector.correct(first, second));
+        assertEquals(PASSPORT, new String(first) + "\n" + new String(second));
+        assertEquals(ID, correct(replace(ID_1, 14, "Z"), replace(ID_2, 0, "72O8I4B")));
+    }
+
+    @Test
+    public void testLetterWithSameCheckValue() {
+        // G counts as 6 in the check digits, so this passes the checks without correction
+        String second = replace(PASSPORT_2, 24, "G");
+        assertTrue(Mrz.valid(PASSPORT_1 + "\n" + second));
+        assertEquals(PASSPORT, correct(PASSPORT_1, second));
+    }
+
+    @Test
+    public void testDocumentNumber() {
+        String second = replace(PASSPORT_2, 6, "0");
+        assertFalse(Mrz.valid(PASSPORT_1 + "\n" + second));
+        assertEquals(PASSPORT, correct(PASSPORT_1, second));
+        String first = replace(ID_1, 7, "O");
+        assertFalse(Mrz.valid(first + "\n" + ID_2));
+        assertEquals(ID, correct(first, ID_2));
+    }
+
+    @Test
+    public void testAmbiguousNotCorrected() {
+        // Both CI00383F1 and C10D383F1 pass the checks
+        char[] first = replace(ID_1, 5, "C1").toCharArray();
+        char[] second = ID_2.toCharArray();
+        assertFalse(MrzCorrector.correct(first, second));
+        assertEquals(replace(ID_1, 5, "C1"), new String(first));
+        assertEquals(ID_2, new String(second));
+    }
+
+    @Test
+    public void testCandidateLimit() {
+        String second = replace(PASSPORT_2, 6, "0");
+        // G, D, 0 (3 times), 8 and 6 make 7 candidates, all are needed to rule out ambiguity
+        assertEquals(PASSPORT_1 + "\n" + second, correct(PASSPORT_1, second, 6));
+        assertEquals(PASSPORT, correct(PASSPORT_1, second, 7));
+    }
+
+    @Test
+    public void testUncorrectable() {
+        // An error without look-alike stays an error
+        String second = replace(PASSPORT_2, 3, "X");
+        assertFalse(Mrz.valid(correct(PASSPORT_1, second)));
+        // Lines of no known length are left alone
+        assertFalse(MrzCorrector.correct(new char[0], new char[0]));
+        assertFalse(MrzCorrector.correct("P<NLD".toCharArray(), "GHD".toCharArray()));
+    }
+
+    @Test
+    public void testMissingLine() {
+        // Only the lines that were read are corrected, the third line of an ID card is not needed
+        char[][] lines = {null, replace(ID_2, 0, "72O8I4B").toCharArray(), null};
+        assertTrue(MrzCorrector.correct(MrzFormat.TD1, lines));
+        assertNull(lines[0]);
+        assertArrayEquals(ID_2.toCharArray(), lines[1]);
+        assertNull(lines[2]);
+    }
+
+    @Test
+    public void testMrzIsCorrected() {
+        Mrz mrz = new Mrz(PASSPORT_1 + "\n" + replace(PASSPORT_2, 6, "0"));
+        assertTrue(mrz.valid());
+        assertEquals("GHD777O86", mrz.getPrettyData().getDocumentNumber());
+    }
+}
@@ -0,0 +1,126 @@
+package com.digitalvotingpass.ocrscanner;
+
+import com.digitalvotingpass.digitalvotingpass.DocumentData;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class MrzFrameReaderTest {
+    private static final int WIDTH = 300;
+    private static final String[] PASSPORT = {
+            "P<NLDBLEH<<JAN<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<",
+            "GHD777O861NLD9005226M18062657542648264<<<<04"};
+    private static final String[] ID = {
+            "I<NLDCI00383F12999999990<<<<<8",
+            "7208148F1108268NLD<<<<<<<<<<<2",
+            "VAN<DER<STEEN<<MARIANNE<LOUISE"};
+
+    /**
+     * Returns the text of a line without looking at the image. The lines of the test frames start
+     * every 30 rows.
+     */
+    private static class TextRecognizer implements MrzLineRecognizer {
+        private final String[] lines;
+        private final List<Integer> recognized = new ArrayList<>();
+        private boolean stopped = false;
+
+        TextRecognizer(String... lines) {
+            this.lines = lines;
+        }
+
+        @Override
+        public void setImage(byte[] binary, int width, int height, int bytesPerLine) {
+            assertEquals(WIDTH, width);
+            assertEquals((WIDTH + 7) / 8, bytesPerLine);
+        }
+
+        @Override
+        public boolean recognizeLine(int top, int bottom, MrzReading reading) {
+            if (stopped) {
+                return false;
+            }
+            int line = top / 30;
+            recognized.add(line);
+            for (char c : lines[line].toCharArray()) {
+                reading.addCharacter(c, 90);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Frame with dark blocks on a light background for every line, 16 rows high and 30 rows apart.
+     */
+    private static LuminanceFrame frame(int lineCount) {
+        LuminanceFrame frame = new LuminanceFrame();
+        frame.setSize(WIDTH, lineCount * 30 + 10);
+        byte[] data = frame.getData();
+        Arrays.fill(data, 0, WIDTH * frame.getHeight(), (byte) 200);
+        for (int line = 0; line < lineCount; line++) {
+            for (int y = line * 30 + 8; y < line * 30 + 24; y++) {
+                for (int x = 10; x < WIDTH - 10; x++) {
+                    if ((x / 6) % 2 == 0) {
+                        data[y * WIDTH + x] = 40;
+                    }
+                }
+            }
+        }
+        return frame;
+    }
+
+    @Test
+    public void testPassportFromSecondLine() {
+        TextRecognizer recognizer = new TextRecognizer(PASSPORT);
+        MrzFrameReader reader = new MrzFrameReader(recognizer);
+        DocumentData data = reader.read(frame(2));
+        assertEquals("GHD777O86", data.getDocumentNumber());
+        assertEquals(Arrays.asList(1), recognizer.recognized);
+        assertEquals(MrzFormat.TD3, reader.getFormat());
+        assertEquals(1, reader.getLinesRecognized());
+        assertEquals(1, reader.getLinesSkipped());
+    }
+
+    @Test
+    public void testIdCardWithoutNames() {
+        TextRecognizer recognizer = new TextRecognizer(ID);
+        MrzFrameReader reader = new MrzFrameReader(recognizer);
+        DocumentData data = reader.read(frame(3));
+        assertEquals("CI00383F1", data.getDocumentNumber());
+        assertEquals(Arrays.asList(1, 0), recognizer.recognized);
+        assertEquals(1, reader.getLinesSkipped());
+    }
+
+    @Test
+    public void testInvalidLeavesReading() {
+        TextRecognizer recognizer = new TextRecognizer(PASSPORT[0], PASSPORT[1].replace("900522", "900523"));
+        MrzFrameReader reader = new MrzFrameReader(recognizer);
+        assertNull(reader.read(frame(2)));
+        assertEquals(Arrays.asList(1, 0), recognizer.recognized);
+        assertEquals(2, reader.getReading().getLineCount());
+        assertEquals(44, reader.getReading().getLength(0));
+    }
+
+    @Test
+    public void testStopped() {
+        TextRecognizer recognizer = new TextRecognizer(PASSPORT);
+        recognizer.stopped = true;
+        MrzFrameReader reader = new MrzFrameReader(recognizer);
+        assertNull(reader.read(frame(2)));
+        assertEquals(2, reader.getLineCount());
+        assertEquals(0, reader.getReading().getLineCount());
+    }
+
+    @Test
+    public void testNoLines() {
+        MrzFrameReader reader = new MrzFrameReader(new TextRecognizer());
+        assertNull(reader.read(frame(0)));
+        assertEquals(1, reader.getFramesWithoutLines());
+        assertEquals(0, reader.getReading().getLineCount());
+    }
+}
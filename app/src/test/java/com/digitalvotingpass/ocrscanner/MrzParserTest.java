@@ -0,0 +1,118 @@
+package com.digitalvotingpass.ocrscanner;
+
+import com.digitalvotingpass.digitalvotingpass.DocumentData;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MrzParserTest {
+    private static final String[] PASSPORT = {
+            "P<NLDBLEH<<JAN<<<<<<<<<<<<<<<<<<<<<<<<<<<<<<",
+            "GHD777O861NLD9005226M18062657542648264<<<<04"};
+    private static final String[] TD2 = {
+            "I<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<",
+            "D231458907UTO7408122F1204159<<<<<<<6"};
+    private static final String[] ID = {
+            "I<NLDCI00383F12999999990<<<<<8",
+            "7208148F1108268NLD<<<<<<<<<<<2",
+            "VAN<DER<STEEN<<MARIANNE<LOUISE"};
+
+    private MrzParser parser;
+    private MrzReading reading;
+
+    @Before
+    public void setUp() {
+        parser = new MrzParser();
+        reading = new MrzReading();
+    }
+
+    /**
+     * Recognize the lines the parser asks for from the given lines.
+     * @return the number of recognized lines.
+     */
+    private int recognize(String... lines) {
+        reading.clear();
+        parser.start(lines.length);
+        int recognized = 0;
+        for (int line = parser.nextLine(); line >= 0; line = parser.nextLine()) {
+            reading.startLine(line);
+            for (char c : lines[line].toCharArray()) {
+                reading.addCharacter(c, 90);
+            }
+            parser.addLine(reading, line);
+            recognized++;
+        }
+        return recognized;
+    }
+
+    @Test
+    public void testPassportValidAfterSecondLine() {
+        assertEquals(1, recognize(PASSPORT));
+        assertTrue(parser.isValid());
+        assertEquals(MrzFormat.TD3, parser.getFormat());
+        DocumentData data = parser.getDocumentData();
+        assertEquals("GHD777O86", data.getDocumentNumber());
+        assertEquals("900522", data.getDateOfBirth());
+        assertEquals("180626", data.getExpiryDate());
+    }
+
+    @Test
+    public void testTd2ValidAfterSecondLine() {
+        assertEquals(1, recognize(TD2));
+        assertEquals(MrzFormat.TD2, parser.getFormat());
+        DocumentData data = parser.getDocumentData();
+        assertEquals("D23145890", data.getDocumentNumber());
+        assertEquals("740812", data.getDateOfBirth());
+        assertEquals("120415", data.getExpiryDate());
+    }
+
+    @Test
+    public void testIdCardWithoutNames() {
+        assertEquals(2, recognize(ID));
+        assertTrue(parser.isValid());
+        assertEquals(MrzFormat.TD1, parser.getFormat());
+        DocumentData data = parser.getDocumentData();
+        assertEquals("CI00383F1", data.getDocumentNumber());
+        assertEquals("720814", data.getDateOfBirth());
+        assertEquals("110826", data.getExpiryDate());
+        // The names were not recognized
+        assertEquals(0, reading.getLength(2));
+    }
+
+    @Test
+    public void testInvalidReadsAllLines() {
+        String[] lines = {PASSPORT[0], PASSPORT[1].replace("900522", "900523")};
+        assertEquals(2, recognize(lines));
+        assertFalse(parser.isValid());
+        assertNull(parser.getDocumentData());
+        // Both lines are in the reading, to be combined with other frames
+        assertEquals(44, reading.getLength(0));
+        assertEquals(44, reading.getLength(1));
+    }
+
+    @Test
+    public void testCorrected() {
+        assertEquals(1, recognize(PASSPORT[0], PASSPORT[1].replace("900522", "9OO5ZZ")));
+        assertEquals("900522", parser.getDocumentData().getDateOfBirth());
+    }
+
+    @Test
+    public void testUnknownLength() {
+        assertEquals(2, recognize(PASSPORT[0].substring(1), PASSPORT[1].substring(1)));
+        assertNull(parser.getFormat());
+        assertFalse(parser.isValid());
+    }
+
+    @Test
+    public void testReused() {
+        recognize(ID);
+        recognize(PASSPORT);
+        assertEquals(MrzFormat.TD3, parser.getFormat());
+        assertEquals("GHD777O86", parser.getDocumentData().getDocumentNumber());
+    }
+}
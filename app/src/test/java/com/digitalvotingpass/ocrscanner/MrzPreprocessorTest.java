@@ -0,0 +1,89 @@
+package com.digitalvotingpass.ocrscanner;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MrzPreprocessorTest {
+    private static final int WIDTH = 300;
+
+    /**
+     * Frame with a light background that gets brighter to the right, like glare, and text lines of
+     * dark blocks 6 pixels wide with 6 pixels space between them.
+     * @param lines top and bottom row of every line.
+     */
+    private static LuminanceFrame text(int height, int[][] lines) {
+        LuminanceFrame frame = new LuminanceFrame();
+        frame.setSize(WIDTH, height);
+        byte[] data = frame.getData();
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                data[y * WIDTH + x] = (byte) (150 + x / 3);
+            }
+        }
+        for (int[] line : lines) {
+            for (int y = line[0]; y < line[1]; y++) {
+                for (int x = 10; x < WIDTH - 10; x++) {
+                    if ((x / 6) % 2 == 0) {
+                        data[y * WIDTH + x] = (byte) (40 + x / 3);
+                    }
+                }
+            }
+        }
+        return frame;
+    }
+
+    private static boolean white(MrzPreprocessor preprocessor, int x, int y) {
+        int b = preprocessor.getBinary()[y * preprocessor.getBytesPerLine() + x / 8];
+        return ((b >> (7 - (x & 7))) & 1) == 1;
+    }
+
+    @Test
+    public void testTwoLines() {
+        MrzPreprocessor preprocessor = new MrzPreprocessor();
+        assertEquals(2, preprocessor.process(text(60, new int[][]{{10, 26}, {34, 50}})));
+        assertEquals(2, preprocessor.getLineCount());
+        // Padded by a quarter of the line height
+        assertEquals(6, preprocessor.getLineTop(0));
+        assertEquals(30, preprocessor.getLineBottom(0));
+        assertEquals(30, preprocessor.getLineTop(1));
+        assertEquals(54, preprocessor.getLineBottom(1));
+    }
+
+    @Test
+    public void testThreeLines() {
+        MrzPreprocessor preprocessor = new MrzPreprocessor();
+        assertEquals(3, preprocessor.process(text(90, new int[][]{{5, 21}, {35, 51}, {65, 81}})));
+    }
+
+    @Test
+    public void testKeepsLowestLines() {
+        // A short line of other text above the MRZ is left out
+        MrzPreprocessor preprocessor = new MrzPreprocessor();
+        assertEquals(2, preprocessor.process(text(100, new int[][]{{5, 10}, {40, 60}, {70, 90}})));
+        assertEquals(35, preprocessor.getLineTop(0));
+    }
+
+    @Test
+    public void testNoLines() {
+        MrzPreprocessor preprocessor = new MrzPreprocessor();
+        assertEquals(0, preprocessor.process(text(60, new int[0][])));
+    }
+
+    @Test
+    public void testBinary() {
+        MrzPreprocessor preprocessor = new MrzPreprocessor();
+        preprocessor.process(text(60, new int[][]{{10, 26}}));
+        assertEquals((WIDTH + 7) / 8, preprocessor.getBytesPerLine());
+        // Background stays white despite the gradient, blocks become black
+        assertTrue(white(preprocessor, 5, 5));
+        assertTrue(white(preprocessor, WIDTH - 5, 5));
+        assertFalse(white(preprocessor, 13, 15));
+        assertTrue(white(preprocessor, 19, 15));
+        assertFalse(white(preprocessor, WIDTH - 20, 15));
+        // The last byte is padded with white
+        assertEquals(0x0F, preprocessor.getBinary()[5 * preprocessor.getBytesPerLine() + WIDTH / 8] & 0x0F);
+    }
+}
@@ -4,6 +4,8 @@ import com.digitalvotingpass.digitalvotingpass.DocumentData;
 
 import org.junit.Test;
 
+import java.util.Random;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -89,4 +91,61 @@ public class MrzTest {
         assertEquals(valid_pass_expiry_data, data.getExpiryDate());
         assertTrue(data.isValid());
     }
+
+    @Test
+    public void td2_mrz() throws Exception {
+        String td2 = "I<UTOERIKSSON<<ANNA<MARIA<<<<<<<<<<<\n" +
+                     "D231458907UTO7408122F1204159<<<<<<<6";
+        Mrz valid = new Mrz(td2);
+        assertTrue(valid.valid());
+        assertEquals(MrzFormat.TD2, valid.getFormat());
+        assertEquals("D23145890", valid.getPrettyData().getDocumentNumber());
+        assertFalse(Mrz.valid(td2.replace("7408122", "7408123")));
+    }
+
+    @Test
+    public void matches_legacy_parser() throws Exception {
+        String[] inputs = {valid_id_mrz, invalid_id_mrz, valid_passport_mrz, invalid_passport_mrz,
+                " " + valid_passport_mrz.replace("\n", " \n\n") + "\nGARBAGE", "", "P<NLD"};
+        for (String input : inputs) {
+            Mrz mrz = new Mrz(input);
+            LegacyMrz legacy = new LegacyMrz(input);
+            assertEquals(legacy.getText(), mrz.getText());
+            assertEquals(legacy.valid(), mrz.valid());
+            if (legacy.valid()) {
+                DocumentData data = mrz.getPrettyData();
+                DocumentData legacyData = legacy.getPrettyData();
+                assertEquals(legacyData.getDocumentNumber(), data.getDocumentNumber());
+                assertEquals(legacyData.getDateOfBirth(), data.getDateOfBirth());
+                assertEquals(legacyData.getExpiryDate(), data.getExpiryDate());
+            }
+        }
+    }
+
+    @Test
+    public void checksums_match_legacy_parser() throws Exception {
+        // Change characters of valid MRZs at random, the checks should agree on every result.
+        // Left out are the document code, the format no longer depends on it, and the optional
+        // data of the ID card: the legacy parser left its first character out of the composite
+        // check digit against ICAO 9303, which shifts the weights of the others.
+        String characters = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ<a?";
+        Random random = new Random(3);
+        int idOptional = valid_id_mrz.indexOf('\n') + 1 + 18;
+        int idOptionalEnd = idOptional + 11;
+        for (String valid : new String[]{valid_id_mrz, valid_passport_mrz}) {
+            for (int i = 0; i < 2000; i++) {
+                char[] chars = valid.toCharArray();
+                for (int changes = random.nextInt(3); changes >= 0; changes--) {
+                    int position = random.nextInt(chars.length);
+                    boolean skipped = position == 0 || (valid.equals(valid_id_mrz)
+                            && position >= idOptional && position < idOptionalEnd);
+                    if (chars[position] != '\n' && !skipped) {
+                        chars[position] = characters.charAt(random.nextInt(characters.length()));
+                    }
+                }
+                LegacyMrz legacy = new LegacyMrz(new String(chars));
+                assertEquals(legacy.getText(), legacy.valid(), Mrz.valid(legacy.getText()));
+            }
+        }
+    }
 }
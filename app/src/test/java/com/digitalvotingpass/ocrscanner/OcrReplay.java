@@ -0,0 +1,250 @@
+package com.digitalvotingpass.ocrscanner;
+
+import com.digitalvotingpass.digitalvotingpass.DocumentData;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Replays MRZ photos through the scan of the app on the desktop: {@link MrzFrameReader} with
+ * Tesseract through tess4j, and {@link MrzConsensus} over the frames of a document. Reports the
+ * latency percentiles per frame, the success rate and the frames it took to a valid MRZ, and
+ * exits with 1 when the success rate is below the minimum, so a build box can run it.
+ *
+ * A photo in a folder is replayed as a series of frames, every frame shifted by a few pixels
+ * and with some noise, like the frames of a camera held still. The photos in a subfolder are
+ * replayed in order of their name as the frames of one document.
+ *
+ * Run with the main method from the unit test classpath, in the app folder:
+ * OcrReplay [-frames 10] [-minSuccess 1.0] [-trainedData src/main/assets/ocrb.traineddata]
+ * [folder...], the default folder is src/main/assets/testimages.
+ */
+public class OcrReplay {
+    private static final String[] IMAGE_EXTENSIONS = {".jpg", ".jpeg", ".png"};
+    private static final int MAX_SHIFT = 2;
+    private static final int NOISE = 8;
+
+    /**
+     * The replay of the frames of one document.
+     */
+    static class Replay {
+        final String name;
+        final List<Long> nanos = new ArrayList<>();
+        int validFrames = 0;
+        /**
+         * Frames until the first valid MRZ, counting that frame, or -1 when there was none.
+         */
+        int framesToValid = -1;
+        DocumentData data;
+
+        Replay(String name) {
+            this.name = name;
+        }
+    }
+
+    private final MrzFrameReader reader;
+    private final Random random = new Random(1);
+    private final LuminanceFrame frame = new LuminanceFrame();
+
+    public OcrReplay(MrzLineRecognizer recognizer) {
+        reader = new MrzFrameReader(recognizer);
+    }
+
+    /**
+     * Replay a single photo as frames of a camera held still, the first frame is the photo itself.
+     */
+    public Replay replay(File photo, int frames) throws IOException {
+        BufferedImage image = read(photo);
+        Replay replay = new Replay(photo.getName());
+        MrzConsensus consensus = new MrzConsensus();
+        for (int i = 0; i < frames; i++) {
+            int dx = i == 0 ? 0 : random.nextInt(2 * MAX_SHIFT + 1) - MAX_SHIFT;
+            int dy = i == 0 ? 0 : random.nextInt(2 * MAX_SHIFT + 1) - MAX_SHIFT;
+            toFrame(image, dx, dy, i == 0 ? 0 : NOISE);
+            scan(replay, consensus, i);
+        }
+        return replay;
+    }
+
+    /**
+     * Replay the photos of a folder as the consecutive frames of one document.
+     */
+    public Replay replayBurst(File folder) throws IOException {
+        Replay replay = new Replay(folder.getName() + "/");
+        MrzConsensus consensus = new MrzConsensus();
+        File[] photos = photos(folder);
+        for (int i = 0; i < photos.length; i++) {
+            toFrame(read(photos[i]), 0, 0, 0);
+            scan(replay, consensus, i);
+        }
+        return replay;
+    }
+
+    private void scan(Replay replay, MrzConsensus consensus, int index) {
+        long start = System.nanoTime();
+        DocumentData data = reader.read(frame);
+        if (data == null && reader.getReading().getLineCount() > 0) {
+            Mrz mrz = consensus.add(reader.getReading());
+            data = mrz == null ? null : mrz.getPrettyData();
+        }
+        replay.nanos.add(System.nanoTime() - start);
+        if (data != null) {
+            replay.validFrames++;
+            if (replay.framesToValid < 0) {
+                replay.framesToValid = index + 1;
+                replay.data = data;
+            }
+        }
+    }
+
+    private static BufferedImage read(File photo) throws IOException {
+        BufferedImage image = ImageIO.read(photo);
+        if (image == null) {
+            throw new IOException("Not an image: " + photo);
+        }
+        return image;
+    }
+
+    /**
+     * Fill the frame with the luminance of the image, shifted by dx and dy with the edge repeated,
+     * and with random noise of at most the given value.
+     */
+    private void toFrame(BufferedImage image, int dx, int dy, int noise) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        frame.setSize(width, height);
+        byte[] data = frame.getData();
+        for (int y = 0; y < height; y++) {
+            int sourceY = Math.min(height - 1, Math.max(0, y + dy));
+            for (int x = 0; x < width; x++) {
+                int rgb = image.getRGB(Math.min(width - 1, Math.max(0, x + dx)), sourceY);
+                // Same weights as the Y plane of the camera
+                int luminance = (299 * ((rgb >> 16) & 0xff) + 587 * ((rgb >> 8) & 0xff) + 114 * (rgb & 0xff)) / 1000;
+                if (noise > 0) {
+                    luminance += random.nextInt(2 * noise + 1) - noise;
+                }
+                data[y * width + x] = (byte) Math.min(255, Math.max(0, luminance));
+            }
+        }
+    }
+
+    private static File[] photos(File folder) {
+        List<File> photos = new ArrayList<>();
+        File[] files = folder.listFiles();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                String name = file.getName().toLowerCase(Locale.US);
+                for (String extension : IMAGE_EXTENSIONS) {
+                    if (file.isFile() && name.endsWith(extension)) {
+                        photos.add(file);
+                        break;
+                    }
+                }
+            }
+        }
+        return photos.toArray(new File[photos.size()]);
+    }
+
+    /**
+     * @param fraction between 0 and 1
+     * @return the value below which the fraction of the sorted values is, by the nearest rank.
+     */
+    static long percentile(long[] sorted, double fraction) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(fraction * sorted.length);
+        return sorted[Math.min(sorted.length - 1, Math.max(0, rank - 1))];
+    }
+
+    private static long[] sorted(List<Long> values) {
+        long[] sorted = new long[values.size()];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = values.get(i);
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    private static String latencies(List<Long> nanos) {
+        long[] sorted = sorted(nanos);
+        return String.format(Locale.US, "p50 %6.1f ms  p90 %6.1f ms  p99 %6.1f ms  max %6.1f ms",
+                percentile(sorted, 0.5) / 1e6, percentile(sorted, 0.9) / 1e6,
+                percentile(sorted, 0.99) / 1e6, percentile(sorted, 1) / 1e6);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int frames = 10;
+        double minSuccess = 1.0;
+        File trainedData = new File("src/main/assets/ocrb.traineddata");
+        List<File> folders = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("-frames".equals(args[i])) {
+                frames = Integer.parseInt(args[++i]);
+            } else if ("-minSuccess".equals(args[i])) {
+                minSuccess = Double.parseDouble(args[++i]);
+            } else if ("-trainedData".equals(args[i])) {
+                trainedData = new File(args[++i]);
+            } else {
+                folders.add(new File(args[i]));
+            }
+        }
+        if (folders.isEmpty()) {
+            folders.add(new File("src/main/assets/testimages"));
+        }
+
+        List<Replay> replays = new ArrayList<>();
+        try (Tess4jLineRecognizer recognizer = new Tess4jLineRecognizer(trainedData)) {
+            OcrReplay replay = new OcrReplay(recognizer);
+            for (File folder : folders) {
+                for (File photo : photos(folder)) {
+                    replays.add(replay.replay(photo, frames));
+                }
+                File[] bursts = folder.listFiles();
+                if (bursts != null) {
+                    Arrays.sort(bursts);
+                    for (File burst : bursts) {
+                        if (burst.isDirectory() && photos(burst).length > 0) {
+                            replays.add(replay.replayBurst(burst));
+                        }
+                    }
+                }
+            }
+            System.out.println("Lines recognized: " + replay.reader.getLinesRecognized()
+                    + ", skipped: " + replay.reader.getLinesSkipped()
+                    + ", frames without MRZ lines: " + replay.reader.getFramesWithoutLines());
+        }
+
+        List<Long> allNanos = new ArrayList<>();
+        int succeeded = 0;
+        int framesToValid = 0;
+        for (Replay replay : replays) {
+            allNanos.addAll(replay.nanos);
+            if (replay.framesToValid > 0) {
+                succeeded++;
+                framesToValid += replay.framesToValid;
+            }
+            System.out.println(String.format(Locale.US, "%-24s %s  valid %3d/%-3d  first valid %3s  %s",
+                    replay.name, latencies(replay.nanos), replay.validFrames, replay.nanos.size(),
+                    replay.framesToValid > 0 ? String.valueOf(replay.framesToValid) : "-",
+                    replay.data == null ? "" : replay.data.getDocumentNumber()));
+        }
+        double successRate = replays.isEmpty() ? 0 : succeeded / (double) replays.size();
+        System.out.println(String.format(Locale.US, "%-24s %s", "all frames", latencies(allNanos)));
+        System.out.println(String.format(Locale.US, "Success rate %.2f (%d/%d), mean frames to first valid %.2f",
+                successRate, succeeded, replays.size(), succeeded == 0 ? 0 : framesToValid / (double) succeeded));
+        if (successRate < minSuccess) {
+            System.out.println("Success rate below " + minSuccess);
+            System.exit(1);
+        }
+    }
+}
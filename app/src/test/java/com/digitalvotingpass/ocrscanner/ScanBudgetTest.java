@@ -0,0 +1,81 @@
+package com.digitalvotingpass.ocrscanner;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScanBudgetTest {
+    private long time;
+    private ScanBudget budget;
+
+    @Before
+    public void setUp() {
+        time = 1000;
+        budget = new ScanBudget(100) {
+            @Override
+            long now() {
+                return time;
+            }
+        };
+    }
+
+    @Test
+    public void testCompletedWithinBudget() {
+        budget.start();
+        time += 99;
+        assertFalse(budget.checkExpired());
+        assertTrue(budget.finish());
+        assertEquals(1, budget.getCompleted());
+        assertEquals(0, budget.getAbandoned());
+    }
+
+    @Test
+    public void testExpiresOnce() {
+        budget.start();
+        time += 100;
+        assertFalse(budget.isCancelled());
+        assertTrue(budget.checkExpired());
+        assertTrue(budget.isCancelled());
+        assertFalse(budget.checkExpired());
+        assertFalse(budget.cancel());
+        assertFalse(budget.finish());
+        assertEquals(0, budget.getCompleted());
+        assertEquals(1, budget.getAbandoned());
+    }
+
+    @Test
+    public void testCancelOnlyWhileRunning() {
+        assertFalse(budget.cancel());
+        budget.start();
+        assertTrue(budget.cancel());
+        assertFalse(budget.finish());
+        assertFalse(budget.cancel());
+
+        // A new frame gets a new budget
+        time += 1000;
+        budget.start();
+        assertFalse(budget.checkExpired());
+        assertTrue(budget.finish());
+        assertEquals(1, budget.getCompleted());
+        assertEquals(1, budget.getAbandoned());
+    }
+
+    @Test
+    public void testRunningUntilFinished() {
+        assertFalse(budget.isRunning());
+        budget.start();
+        assertTrue(budget.isRunning());
+        assertTrue(budget.cancel());
+        assertTrue(budget.isRunning());
+        assertFalse(budget.finish());
+        assertFalse(budget.isRunning());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidBudget() {
+        new ScanBudget(0);
+    }
+}
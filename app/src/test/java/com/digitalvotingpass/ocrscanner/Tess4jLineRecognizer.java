@@ -0,0 +1,103 @@
+package com.digitalvotingpass.ocrscanner;
+
+import com.sun.jna.Pointer;
+
+import net.sourceforge.tess4j.ITessAPI;
+import net.sourceforge.tess4j.TessAPI1;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Recognizes MRZ lines with the Tesseract library of the desktop through tess4j, set up like
+ * tess-two in {@link TesseractOCR}. Tess4j 3.4 uses Tesseract 3.05 like tess-two 6.3, on Linux
+ * libtesseract 3.05 has to be installed.
+ */
+public class Tess4jLineRecognizer implements MrzLineRecognizer, Closeable {
+    private static final String MRZ_CHARACTERS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZ<";
+
+    private final ITessAPI.TessBaseAPI handle;
+    private final File dataDirectory;
+    private ByteBuffer image;
+    private int width;
+
+    /**
+     * @param trainedData the traineddata file, it is copied to a temporary tessdata folder.
+     */
+    public Tess4jLineRecognizer(File trainedData) throws IOException {
+        dataDirectory = Files.createTempDirectory("tessdata").toFile();
+        File tessdata = new File(dataDirectory, "tessdata");
+        if (!tessdata.mkdir()) {
+            throw new IOException("Could not create " + tessdata);
+        }
+        String name = trainedData.getName();
+        Files.copy(trainedData.toPath(), new File(tessdata, name).toPath(), StandardCopyOption.REPLACE_EXISTING);
+        handle = TessAPI1.TessBaseAPICreate();
+        // Tesseract 3.05 wants the folder that holds the tessdata folder
+        if (TessAPI1.TessBaseAPIInit3(handle, dataDirectory.getPath() + File.separator,
+                name.substring(0, name.lastIndexOf('.'))) != 0) {
+            TessAPI1.TessBaseAPIDelete(handle);
+            throw new IOException("Could not initialize Tesseract with " + trainedData);
+        }
+        TessAPI1.TessBaseAPISetVariable(handle, "tessedit_char_whitelist", MRZ_CHARACTERS);
+        TessAPI1.TessBaseAPISetPageSegMode(handle, ITessAPI.TessPageSegMode.PSM_SINGLE_LINE);
+    }
+
+    @Override
+    public void setImage(byte[] binary, int width, int height, int bytesPerLine) {
+        // Tesseract reads the image through a pointer, so it needs a direct buffer
+        int size = bytesPerLine * height;
+        if (image == null || image.capacity() < size) {
+            image = ByteBuffer.allocateDirect(size);
+        }
+        image.clear();
+        image.put(binary, 0, size);
+        image.flip();
+        this.width = width;
+        TessAPI1.TessBaseAPISetImage(handle, image, width, height, 0, bytesPerLine);
+    }
+
+    @Override
+    public boolean recognizeLine(int top, int bottom, MrzReading reading) {
+        TessAPI1.TessBaseAPISetRectangle(handle, 0, top, width, bottom - top);
+        if (TessAPI1.TessBaseAPIRecognize(handle, null) != 0) {
+            return false;
+        }
+        ITessAPI.TessResultIterator iterator = TessAPI1.TessBaseAPIGetIterator(handle);
+        if (iterator == null) {
+            return true;
+        }
+        int level = ITessAPI.TessPageIteratorLevel.RIL_SYMBOL;
+        do {
+            Pointer text = TessAPI1.TessResultIteratorGetUTF8Text(iterator, level);
+            if (text != null) {
+                String symbol = text.getString(0, "UTF-8");
+                TessAPI1.TessDeleteText(text);
+                if (symbol.length() == 1) {
+                    reading.addCharacter(symbol.charAt(0), TessAPI1.TessResultIteratorConfidence(iterator, level));
+                }
+            }
+        } while (TessAPI1.TessResultIteratorNext(iterator, level) == ITessAPI.TRUE);
+        TessAPI1.TessResultIteratorDelete(iterator);
+        return true;
+    }
+
+    @Override
+    public void close() {
+        TessAPI1.TessBaseAPIEnd(handle);
+        TessAPI1.TessBaseAPIDelete(handle);
+        File tessdata = new File(dataDirectory, "tessdata");
+        File[] files = tessdata.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        tessdata.delete();
+        dataDirectory.delete();
+    }
+}
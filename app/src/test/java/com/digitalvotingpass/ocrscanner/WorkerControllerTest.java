@@ -0,0 +1,175 @@
+package com.digitalvotingpass.ocrscanner;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class WorkerControllerTest {
+    private long time;
+    private WorkerController controller;
+
+    @Before
+    public void setUp() {
+        time = 1000;
+        controller = create(4);
+    }
+
+    private WorkerController create(int maxWorkers) {
+        return new WorkerController(maxWorkers) {
+            @Override
+            long now() {
+                return time;
+            }
+        };
+    }
+
+    /**
+     * Let the active threads scan a window of frames that each take the given time, as many
+     * frames per second as the given throughput.
+     * @return whether the number of threads changed at the end of the window.
+     */
+    private boolean window(float framesPerSecond, long latencyMillis) {
+        int frames = Math.round(framesPerSecond * WorkerController.WINDOW_MILLIS / 1000);
+        long start = time;
+        boolean changed = false;
+        for (int i = 1; i <= frames; i++) {
+            time = start + i * WorkerController.WINDOW_MILLIS / frames;
+            changed = controller.frameDone(latencyMillis);
+        }
+        return changed;
+    }
+
+    @Test
+    public void testStartsWithHalf() {
+        assertEquals(2, controller.getWorkers());
+        assertEquals(1, create(1).getWorkers());
+        assertEquals(2, create(3).getWorkers());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNoWorkers() {
+        create(0);
+    }
+
+    @Test
+    public void testAddsWhileThroughputGrows() {
+        // Every thread is busy and every extra thread adds throughput
+        assertTrue(window(10, 200));
+        assertEquals(3, controller.getWorkers());
+        assertTrue(window(15, 200));
+        assertEquals(4, controller.getWorkers());
+        assertFalse(window(20, 200));
+        assertEquals(4, controller.getWorkers());
+        assertEquals(20, controller.getThroughput(), 0.01);
+        assertEquals(200, controller.getLatency(), 0.01);
+        assertEquals(2, controller.getChanges());
+    }
+
+    @Test
+    public void testRemovesThreadWithoutGain() {
+        assertTrue(window(10, 200));
+        assertEquals(3, controller.getWorkers());
+        // A slow core: the third thread makes every frame slower, the throughput stays the same
+        assertTrue(window(10, 300));
+        assertEquals(2, controller.getWorkers());
+        // The recent measurement with three threads keeps it from being added again
+        assertFalse(window(10, 200));
+        assertEquals(2, controller.getWorkers());
+    }
+
+    @Test
+    public void testRemeasuresLater() {
+        window(10, 200);
+        window(10, 300);
+        assertEquals(2, controller.getWorkers());
+        for (long start = time; time - start < WorkerController.REMEASURE_MILLIS; ) {
+            window(10, 200);
+        }
+        assertEquals(3, controller.getWorkers());
+    }
+
+    @Test
+    public void testRemovesIdleThreads() {
+        // The camera delivers fewer frames than the threads can scan
+        assertTrue(window(5, 100));
+        assertEquals(1, controller.getWorkers());
+        assertFalse(window(5, 100));
+        assertEquals(1, controller.getWorkers());
+    }
+
+    @Test
+    public void testBacksOffWhenWarm() {
+        window(10, 200);
+        window(15, 200);
+        assertEquals(4, controller.getWorkers());
+        controller.setTemperature(WorkerController.WARM_CELSIUS);
+        assertTrue(window(20, 200));
+        assertEquals(3, controller.getWorkers());
+        controller.setTemperature(WorkerController.HOT_CELSIUS);
+        assertTrue(window(15, 200));
+        assertEquals(1, controller.getWorkers());
+        assertFalse(window(5, 200));
+        assertEquals(1, controller.getWorkers());
+        controller.setTemperature(Float.NaN);
+        assertTrue(window(5, 200));
+        assertEquals(2, controller.getWorkers());
+    }
+
+    @Test
+    public void testAwaitTurn() throws InterruptedException {
+        assertTrue(controller.awaitTurn(0));
+        assertTrue(controller.awaitTurn(1));
+        final boolean[] turn = new boolean[1];
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    turn[0] = controller.awaitTurn(2);
+                } catch (InterruptedException e) {
+                    turn[0] = false;
+                }
+            }
+        });
+        waiter.start();
+        window(10, 200);
+        waiter.join(1000);
+        assertFalse(waiter.isAlive());
+        assertTrue(turn[0]);
+    }
+
+    @Test
+    public void testMayScan() {
+        assertTrue(controller.mayScan(1));
+        assertFalse(controller.mayScan(2));
+        controller.close();
+        assertFalse(controller.mayScan(0));
+        controller.open();
+        assertTrue(controller.mayScan(0));
+    }
+
+    @Test
+    public void testCloseWakesWaiting() throws InterruptedException {
+        final boolean[] turn = {true};
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    turn[0] = controller.awaitTurn(3);
+                } catch (InterruptedException e) {
+                    turn[0] = true;
+                }
+            }
+        });
+        waiter.start();
+        controller.close();
+        waiter.join(1000);
+        assertFalse(waiter.isAlive());
+        assertFalse(turn[0]);
+        assertFalse(controller.awaitTurn(0));
+        controller.open();
+        assertTrue(controller.awaitTurn(0));
+    }
+}
@@ -0,0 +1,98 @@
+package com.digitalvotingpass.passportconnection;
+
+import com.digitalvotingpass.digitalvotingpass.DocumentData;
+import com.digitalvotingpass.utilities.Util;
+
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.TransactionOutput;
+import org.jmrtd.PassportService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares spending the outputs of a voter one transaction per output with spending them in one
+ * consolidated transaction, against the simulated document. Prints the card time of both.
+ */
+public class ConsolidatedSpendTest {
+    private static final int OUTPUTS = 3;
+    private static final long LATENCY_MILLIS = 5;
+    private static final String ASSET_SCRIPT = "76a914010966776006953d5567439e5e39f86a0d273bee88ac1c73706b71" +
+            "00112233445566778899aabbccddeeff" + "0100000000000000" + "75";
+
+    private SimulatedPassportCardService card;
+    private PassportConnection pcon;
+    private PassportService ps;
+    private PublicKey pubKey;
+    private final List<TransactionOutput> utxos = new ArrayList<>();
+    private final Address address = mock(Address.class);
+
+    @Before
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        card = new SimulatedPassportCardService(SimulatedPassportCardServiceTest.mrzInfo(),
+                generator.generateKeyPair());
+        DocumentData documentData = new DocumentData();
+        documentData.setDocumentNumber("SPECI2014");
+        documentData.setDateOfBirth("650310");
+        documentData.setExpiryDate("240309");
+
+        pcon = new PassportConnection();
+        ps = pcon.openConnection(card, documentData);
+        pubKey = pcon.getAAPublicKey(ps);
+        card.setLatencyMillis(LATENCY_MILLIS);
+
+        when(address.getHash160()).thenReturn(Util.hexStringToByteArray("010966776006953d5567439e5e39f86a0d273bee"));
+        for (int i = 0; i < OUTPUTS; i++) {
+            TransactionOutput output = mock(TransactionOutput.class);
+            when(output.getParentTransactionHash()).thenReturn(new Sha256Hash("f2b3eb2deb76566e7324307cd47c35eeb88413f971d88519859b1834307ecfec"));
+            when(output.getScriptBytes()).thenReturn(Util.hexStringToByteArray(ASSET_SCRIPT));
+            when(output.getIndex()).thenReturn(i);
+            utxos.add(output);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        ps.close();
+    }
+
+    @Test
+    public void testSameSignaturesFewerTransactions() throws Exception {
+        card.resetCommandCounts();
+        long start = System.nanoTime();
+        int separateBytes = 0;
+        for (TransactionOutput utxo : utxos) {
+            separateBytes += new PassportTransactionFormatter(utxo, address).buildAndSign(pubKey, pcon).length;
+        }
+        long separateMillis = (System.nanoTime() - start) / 1000000;
+        int separateSignatures = card.getCommandCount(SimulatedPassportCardService.INS_INTERNAL_AUTHENTICATE);
+
+        card.resetCommandCounts();
+        start = System.nanoTime();
+        int combinedBytes = new PassportTransactionFormatter(utxos, address).buildAndSign(pubKey, pcon).length;
+        long combinedMillis = (System.nanoTime() - start) / 1000000;
+        int combinedSignatures = card.getCommandCount(SimulatedPassportCardService.INS_INTERNAL_AUTHENTICATE);
+
+        System.out.println(OUTPUTS + " outputs, " + LATENCY_MILLIS + " ms per command: "
+                + OUTPUTS + " transactions of " + separateBytes + " bytes in " + separateMillis + " ms, "
+                + "1 transaction of " + combinedBytes + " bytes in " + combinedMillis + " ms");
+        // Every input is signed separately, the card time does not drop
+        assertEquals(4 * OUTPUTS, separateSignatures);
+        assertEquals(separateSignatures, combinedSignatures);
+        // One transaction to broadcast instead of one per output, without the repeated output
+        assertTrue(combinedBytes < separateBytes);
+    }
+}
@@ -0,0 +1,86 @@
+package com.digitalvotingpass.passportconnection;
+
+import com.digitalvotingpass.digitalvotingpass.Voter;
+
+import net.sf.scuba.data.Gender;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class DocumentSessionCacheTest {
+    private static final String DOCUMENT_NUMBER = "SPECI2014";
+
+    private long time;
+    private DocumentSessionCache cache;
+    private PublicKey pubKey;
+    private Voter voter;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new DocumentSessionCache(1000) {
+            @Override
+            long now() {
+                return time;
+            }
+        };
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        pubKey = generator.generateKeyPair().getPublic();
+        voter = new Voter("Tom", "de Vries", Gender.getInstance(Gender.MALE.toInt()));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        cache.put(DOCUMENT_NUMBER, pubKey, voter);
+        DocumentSessionCache.Session session = cache.get(DOCUMENT_NUMBER);
+        assertNotNull(session);
+        assertArrayEquals(pubKey.getEncoded(), session.getPubKey().getEncoded());
+        assertEquals(voter.getFirstName(), session.getVoter().getFirstName());
+        assertEquals(voter.getLastName(), session.getVoter().getLastName());
+        assertEquals(voter.getGender(), session.getVoter().getGender());
+    }
+
+    @Test
+    public void testWithoutVoter() {
+        cache.put(DOCUMENT_NUMBER, pubKey, null);
+        DocumentSessionCache.Session session = cache.get(DOCUMENT_NUMBER);
+        assertNotNull(session);
+        assertArrayEquals(pubKey.getEncoded(), session.getPubKey().getEncoded());
+        assertNull(session.getVoter());
+    }
+
+    @Test
+    public void testOtherDocument() {
+        cache.put(DOCUMENT_NUMBER, pubKey, voter);
+        assertNull(cache.get("XR0000001"));
+    }
+
+    @Test
+    public void testExpiry() {
+        cache.put(DOCUMENT_NUMBER, pubKey, voter);
+        time = 999;
+        assertNotNull(cache.get(DOCUMENT_NUMBER));
+        time = 1000;
+        assertNull(cache.get(DOCUMENT_NUMBER));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testRemove() {
+        cache.put(DOCUMENT_NUMBER, pubKey, voter);
+        cache.put("XR0000001", pubKey, voter);
+        cache.remove(DOCUMENT_NUMBER);
+        assertNull(cache.get(DOCUMENT_NUMBER));
+        assertEquals(1, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,87 @@
+package com.digitalvotingpass.passportconnection;
+
+import com.digitalvotingpass.utilities.Util;
+
+import org.bitcoinj.core.Address;
+import org.bitcoinj.core.Sha256Hash;
+import org.bitcoinj.core.TransactionOutput;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.PublicKey;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Compares formatting a transaction from separate parts with the single buffer serializer.
+ * The passport is replaced by a connection returning a fixed signature, so only the
+ * formatting is measured. Run with the main method from the unit test classpath,
+ * add "-prof gc" to the options to compare the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PassportTransactionFormatterBenchmark {
+    private PassportTransactionFormatter ptf;
+    private PassportConnection pCon;
+    private PublicKey pubKey;
+
+    /**
+     * Passport connection that signs instantly with a fixed signature.
+     */
+    private static class FixedSignatureConnection extends PassportConnection {
+        private final byte[] signature = new byte[80];
+
+        @Override
+        public byte[] signData(byte[] data) {
+            return signature;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        // the getters are stubbed once and then only return the prepared values
+        TransactionOutput to = mock(TransactionOutput.class);
+        Address address = mock(Address.class);
+        pubKey = mock(PublicKey.class);
+        when(to.getParentTransactionHash()).thenReturn(new Sha256Hash("f2b3eb2deb76566e7324307cd47c35eeb88413f971d88519859b1834307ecfec"));
+        when(to.getScriptBytes()).thenReturn(Util.hexStringToByteArray("76a914010966776006953d5567439e5e39f86a0d273bee88ac"));
+        when(to.getIndex()).thenReturn(1);
+        when(address.getHash160()).thenReturn(Util.hexStringToByteArray("010966776006953d5567439e5e39f86a0d273bee"));
+        when(pubKey.getEncoded()).thenReturn(new byte[91]);
+
+        ptf = new PassportTransactionFormatter(to, address);
+        pCon = new FixedSignatureConnection();
+    }
+
+    @Benchmark
+    public byte[] partsAndConcat() throws Exception {
+        return ptf.signRawTransaction(pubKey, ptf.buildRawTransaction(), pCon);
+    }
+
+    @Benchmark
+    public byte[] singleBuffer() throws Exception {
+        return ptf.serializeSigned(pubKey, pCon);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(PassportTransactionFormatterBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
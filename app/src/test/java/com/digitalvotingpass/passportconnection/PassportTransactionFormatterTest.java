@@ -16,10 +16,16 @@ import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
 import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.List;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
 import static junit.framework.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.notNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -42,6 +48,13 @@ public class PassportTransactionFormatterTest {
 
     private PassportTransactionFormatter ptf;
 
+    private static final String ASSET_SCRIPT_1 = "76a914010966776006953d5567439e5e39f86a0d273bee88ac1c73706b71" +
+            "00112233445566778899aabbccddeeff" + "0200000000000000" + "75";
+    private static final String ASSET_SCRIPT_2 = "76a914010966776006953d5567439e5e39f86a0d273bee88ac1c73706b71" +
+            "00112233445566778899aabbccddeeff" + "0300000000000000" + "75";
+    private static final String ASSET_SCRIPT_OTHER_ASSET = "76a914010966776006953d5567439e5e39f86a0d273bee88ac1c73706b71" +
+            "ffeeddccbbaa99887766554433221100" + "0300000000000000" + "75";
+
 
     @Before
     public void setUp() {
@@ -139,6 +152,109 @@ public class PassportTransactionFormatterTest {
         }
     }
 
+    @Test
+    public void testSerializeUnsigned() {
+        byte[][] transaction = ptf.buildRawTransaction();
+        byte[] raw = Bytes.concat(transaction[0], transaction[1], transaction[2], transaction[3], transaction[4], transaction[5],
+                transaction[6], transaction[7], transaction[8], transaction[9], transaction[10], transaction[11], transaction[12]);
+
+        assertTrue(Arrays.equals(raw, ptf.serializeUnsigned()));
+    }
+
+    @Test
+    public void testSerializeSigned() throws Exception {
+        mockPassport();
+        byte[] correctTransaction = correctSignedTransaction();
+        byte[] transaction = ptf.buildAndSign(pubKey, pCon);
+
+        assertEquals(correctTransaction.length, transaction.length);
+        for(int i=0; i< correctTransaction.length; i++) {
+            assertEquals("Error at byte " + i, correctTransaction[i], transaction[i]);
+        }
+    }
+
+    @Test
+    public void testCanCombine() {
+        assertTrue(PassportTransactionFormatter.canCombine(Arrays.asList(to)));
+        // plain scripts without asset metadata cannot be added up
+        assertFalse(PassportTransactionFormatter.canCombine(Arrays.asList(to, to)));
+        assertTrue(PassportTransactionFormatter.canCombine(Arrays.asList(
+                assetOutput(ASSET_SCRIPT_1, 0), assetOutput(ASSET_SCRIPT_2, 1))));
+        assertFalse(PassportTransactionFormatter.canCombine(Arrays.asList(
+                assetOutput(ASSET_SCRIPT_1, 0), assetOutput(ASSET_SCRIPT_OTHER_ASSET, 1))));
+    }
+
+    @Test
+    public void testSerializeSignedMultipleInputs() throws Exception {
+        when(pCon.signData((byte[])notNull())).thenReturn(new byte[80]);
+        when(pubKey.getEncoded()).thenReturn(new byte[81]);
+        List<TransactionOutput> utxos = Arrays.asList(assetOutput(ASSET_SCRIPT_1, 0), assetOutput(ASSET_SCRIPT_2, 1));
+        PassportTransactionFormatter combined = new PassportTransactionFormatter(utxos, address);
+
+        byte[] transaction = combined.buildAndSign(pubKey, pCon);
+
+        // every input is signed separately
+        verify(pCon, times(8)).signData((byte[])notNull());
+        // version, input count and two inputs with scriptsig
+        int inputs = 4 + 1 + 2 * (32 + 4 + 410 + 4);
+        assertEquals(2, transaction[4]);
+        assertEquals(inputs + 1 + 8 + 1 + 55 + 4 + 4, transaction.length);
+        // the single output holds the total quantity of both utxos
+        assertEquals(5, transaction[inputs + 1 + 8 + 1 + 46]);
+
+        // the hash of the second input contains only the script of that input
+        byte[] unsigned = combined.serializeUnsigned(1);
+        assertEquals(0, unsigned[4 + 1 + 36]);
+        assertEquals(55, unsigned[4 + 1 + 36 + 1 + 4 + 36]);
+    }
+
+    private TransactionOutput assetOutput(String script, int index) {
+        TransactionOutput output = mock(TransactionOutput.class);
+        when(output.getParentTransactionHash()).thenReturn(new Sha256Hash("f2b3eb2deb76566e7324307cd47c35eeb88413f971d88519859b1834307ecfec"));
+        when(output.getScriptBytes()).thenReturn(Util.hexStringToByteArray(script));
+        when(output.getIndex()).thenReturn(index);
+        return output;
+    }
+
+    /**
+     * Let the mocked passport return fixed signatures and public key.
+     */
+    private void mockPassport() throws Exception {
+        //Return signed data
+        when(pCon.signData((byte[])notNull())).thenReturn(
+                Util.hexStringToByteArray("0A5FADA8967CF77C8F00FAF3A8CF73D4615BC970E9BAA76883A2C4E8B9DA56C4ECC9F72E66F045D70A22918431F6263BDB6737A89393D2F5C3931007DF2532C86FDF9390A7163C98F72DE1590D21D34A"),
+                Util.hexStringToByteArray("76732217AC784D75B1A89BAD2348271F5092B6D303F72E26D7374B8ED47F5D3A3324A41BBEE6781967DAF8706A83D6BE5D8990F1CA17FABF07E2FB003C21177EF9C270F64E22828A09E65FE4ECE14039"),
+                Util.hexStringToByteArray("9585FCCCF6A430ECA5E3F9E2C52CDF7627F1E62D04042A69CB0478BFBA60AA2708F55E92FA6518578F9498B7B0A6CCBA14676D921BFB74081970E5E5B944C11BD46F123764F97988A6479D8358FFA6F3"),
+                Util.hexStringToByteArray("606D9D27341FB36052F1F04914E34F3B5C25A6073A6A0565B7BABC2A45C4B964B5B41311FE539A06AB2640B3C68ABFF1A3C78FA946C2BDF01896442956B0A675531374B3E3AE02661D59F91BA0E34557"));
+        //return the public key
+        when(pubKey.getEncoded()).thenReturn(Util.hexStringToByteArray("04b41f0dda6797b6afd9dcfab9b9cc99744644705e67b5872540860cc015044b86de5cc13da2b3f23564f4c4da996c9321d3c8ea25642bd8176761eecc8fbc3fcdbf846b5c927bd488f42afa9f193517e6"));
+    }
+
+    /**
+     * @return the expected signed transaction for the mocked utxo and passport.
+     */
+    private byte[] correctSignedTransaction() {
+        return Util.hexStringToByteArray("01000000" +
+                "01" + //num inputs
+                "ECCF7E3034189B851985D871F91384B8EE357CD47C3024736E5676EB2DEBB3F2" + //script
+                "01000000" + //index
+                "FD97014D4101" + //opcodes + length. next 4 lines signatures
+                "0A5FADA8967CF77C8F00FAF3A8CF73D4615BC970E9BAA76883A2C4E8B9DA56C4ECC9F72E66F045D70A22918431F6263BDB6737A89393D2F5C3931007DF2532C86FDF9390A7163C98F72DE1590D21D34A" +
+                "76732217AC784D75B1A89BAD2348271F5092B6D303F72E26D7374B8ED47F5D3A3324A41BBEE6781967DAF8706A83D6BE5D8990F1CA17FABF07E2FB003C21177EF9C270F64E22828A09E65FE4ECE14039" +
+                "9585FCCCF6A430ECA5E3F9E2C52CDF7627F1E62D04042A69CB0478BFBA60AA2708F55E92FA6518578F9498B7B0A6CCBA14676D921BFB74081970E5E5B944C11BD46F123764F97988A6479D8358FFA6F3" +
+                "606D9D27341FB36052F1F04914E34F3B5C25A6073A6A0565B7BABC2A45C4B964B5B41311FE539A06AB2640B3C68ABFF1A3C78FA946C2BDF01896442956B0A675531374B3E3AE02661D59F91BA0E34557" +
+                "014C" + //opcodes
+                "51" + //length
+                "04B41F0DDA6797B6AFD9DCFAB9B9CC99744644705E67B5872540860CC015044B86DE5CC13DA2B3F23564F4C4DA996C9321D3C8EA25642BD8176761EECC8FBC3FCDBF846B5C927BD488F42AFA9F193517E6" +
+                "FFFFFFFF" + //magic
+                "010000000" + //num inputs
+                "000000000" + //0 coin base
+                "19" + //length
+                "76A91476A914010966776006953D5567439E5E39F86A0D88AC" + //script to
+                "00000000" + //magic
+                "01000000");
+    }
+
     /**
      * Calculate the value of a byte array.
      * @param by The byte array.
@@ -0,0 +1,88 @@
+package com.digitalvotingpass.passportconnection;
+
+import com.digitalvotingpass.digitalvotingpass.DocumentData;
+import com.digitalvotingpass.digitalvotingpass.Voter;
+
+import org.jmrtd.PassportService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the card part of a voter check against the simulated document: BAC, reading DG15
+ * and DG1 and the four AA signatures of one transaction input. With a latency per command the
+ * result shows how much of a check is spent waiting on the NFC link. Run with the main method
+ * from the unit test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SimulatedPassportBenchmark {
+    @Param({"0", "5"})
+    public long latencyMillis;
+
+    private SimulatedPassportCardService card;
+    private DocumentData documentData;
+    private final byte[] challenge = new byte[8];
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        card = new SimulatedPassportCardService(SimulatedPassportCardServiceTest.mrzInfo(),
+                generator.generateKeyPair());
+        card.setLatencyMillis(latencyMillis);
+
+        documentData = new DocumentData();
+        documentData.setDocumentNumber("SPECI2014");
+        documentData.setDateOfBirth("650310");
+        documentData.setExpiryDate("240309");
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.out.println("commands per operation: " + card.getCommandCount()
+                / Math.max(1, card.getCommandCount(SimulatedPassportCardService.INS_EXTERNAL_AUTHENTICATE)));
+    }
+
+    @Benchmark
+    public byte[] voterCheck() throws Exception {
+        PassportConnection pcon = new PassportConnection();
+        PassportService ps = pcon.openConnection(card, documentData);
+        try {
+            PublicKey pubKey = pcon.getAAPublicKey(ps);
+            Voter voter = pcon.getVoter(ps);
+            byte[] signature = null;
+            for (int i = 0; i < 4; i++) {
+                signature = pcon.signData(ps, challenge);
+            }
+            return pubKey != null && voter != null ? signature : null;
+        } finally {
+            ps.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(SimulatedPassportBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
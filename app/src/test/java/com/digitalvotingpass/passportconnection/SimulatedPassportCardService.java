@@ -0,0 +1,513 @@
+package com.digitalvotingpass.passportconnection;
+
+import net.sf.scuba.smartcards.CardService;
+import net.sf.scuba.smartcards.CardServiceException;
+import net.sf.scuba.smartcards.CommandAPDU;
+import net.sf.scuba.smartcards.ResponseAPDU;
+
+import org.jmrtd.lds.DG15File;
+import org.jmrtd.lds.DG1File;
+import org.jmrtd.lds.MRZInfo;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Simulated eMRTD that runs on the JVM, so the passport code can be tested and benchmarked
+ * without a real document. Supports selecting the applet, BAC, 3DES secure messaging, reading
+ * DG1 and DG15 by file identifier or short file identifier and Active Authentication.
+ * AA signs with the given RSA key using ISO 9796-2 scheme 1 with SHA-1, or with the given EC
+ * key using ECDSA with SHA-1 and a plain r || s signature. The transaction formatter uses the
+ * first 80 bytes of every signature, so use an RSA key of at least 640 bits or an EC key of at
+ * least 320 bits for complete voter checks.
+ * Every command can be delayed to simulate the latency of the NFC link, and the commands are
+ * counted per instruction.
+ */
+public class SimulatedPassportCardService extends CardService {
+    static final int INS_SELECT = 0xA4;
+    static final int INS_READ_BINARY = 0xB0;
+    static final int INS_GET_CHALLENGE = 0x84;
+    static final int INS_EXTERNAL_AUTHENTICATE = 0x82;
+    static final int INS_INTERNAL_AUTHENTICATE = 0x88;
+
+    private static final int SW_OK = 0x9000;
+    private static final int SW_SECURITY_STATUS_NOT_SATISFIED = 0x6982;
+    private static final int SW_CONDITIONS_NOT_SATISFIED = 0x6985;
+    private static final int SW_SM_DATA_OBJECTS_INCORRECT = 0x6988;
+    private static final int SW_WRONG_DATA = 0x6A80;
+    private static final int SW_FILE_NOT_FOUND = 0x6A82;
+    private static final int SW_WRONG_P1P2 = 0x6B00;
+    private static final int SW_INS_NOT_SUPPORTED = 0x6D00;
+
+    private static final byte[] APPLET_AID = {(byte) 0xA0, 0x00, 0x00, 0x02, 0x47, 0x10, 0x01};
+    private static final int FID_DG1 = 0x0101;
+    private static final int FID_DG15 = 0x010F;
+    private static final int SFI_DG1 = 0x01;
+    private static final int SFI_DG15 = 0x0F;
+    private static final int MAC_LENGTH = 8;
+
+    private final MRZInfo mrzInfo;
+    private final PrivateKey aaKey;
+    private final Map<Integer, byte[]> files = new HashMap<>();
+    private final SecureRandom random = new SecureRandom();
+    private final int[] commandCounts = new int[256];
+    private int commandCount = 0;
+    private long latencyMillis = 0;
+
+    private boolean open = false;
+    private boolean appletSelected = false;
+    private byte[] rndIC;
+    private byte[] ksEnc;
+    private byte[] ksMac;
+    private long ssc;
+    private byte[] selectedFile;
+
+    /**
+     * @param mrzInfo the MRZ of the document, stored in DG1 and used for the BAC keys.
+     * @param aaKeyPair the RSA or EC key pair for AA, the public key is stored in DG15.
+     */
+    public SimulatedPassportCardService(MRZInfo mrzInfo, KeyPair aaKeyPair) {
+        this.mrzInfo = mrzInfo;
+        this.aaKey = aaKeyPair.getPrivate();
+        files.put(FID_DG1, new DG1File(mrzInfo).getEncoded());
+        files.put(FID_DG15, new DG15File(aaKeyPair.getPublic()).getEncoded());
+    }
+
+    /**
+     * @param latencyMillis the time every command takes before it is answered.
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * @return the number of commands received since the last reset.
+     */
+    public synchronized int getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * @param ins the instruction byte, for example {@link #INS_INTERNAL_AUTHENTICATE}.
+     * @return the number of commands with the instruction received since the last reset.
+     */
+    public synchronized int getCommandCount(int ins) {
+        return commandCounts[ins & 0xFF];
+    }
+
+    public synchronized void resetCommandCounts() {
+        commandCount = 0;
+        Arrays.fill(commandCounts, 0);
+    }
+
+    @Override
+    public void open() {
+        open = true;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public synchronized ResponseAPDU transmit(CommandAPDU command) throws CardServiceException {
+        if (!open)
+            throw new CardServiceException("Card service is not open");
+        commandCount++;
+        commandCounts[command.getINS() & 0xFF]++;
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CardServiceException("Interrupted while waiting for the card");
+            }
+        }
+        try {
+            return new ResponseAPDU(process(command));
+        } catch (GeneralSecurityException e) {
+            throw new CardServiceException(e.toString());
+        }
+    }
+
+    @Override
+    public byte[] getATR() {
+        return new byte[0];
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        endSession();
+        appletSelected = false;
+    }
+
+    private byte[] process(CommandAPDU command) throws GeneralSecurityException {
+        if (ksMac == null)
+            return handle(command.getINS(), command.getP1(), command.getP2(), command.getData(), command.getNe()).getBytes();
+
+        // Secure messaging is active, a plain command ends the session
+        if ((command.getCLA() & 0x0C) != 0x0C) {
+            endSession();
+            return new Reply(SW_SM_DATA_OBJECTS_INCORRECT).getBytes();
+        }
+        byte[] wrapped = command.getData();
+        int macStart = -1;
+        byte[] do87 = null;
+        int ne = 0;
+        byte[] mac = null;
+        int i = 0;
+        while (i < wrapped.length) {
+            int tag = wrapped[i++] & 0xFF;
+            int[] length = readLength(wrapped, i);
+            i = length[1];
+            byte[] value = Arrays.copyOfRange(wrapped, i, i + length[0]);
+            if (tag == 0x87) {
+                do87 = value;
+            } else if (tag == 0x97) {
+                ne = 0;
+                for (byte b : value)
+                    ne = (ne << 8) | (b & 0xFF);
+                if (ne == 0)
+                    ne = value.length == 1 ? 256 : 65536;
+            } else if (tag == 0x8E) {
+                macStart = i - 2;
+                mac = value;
+            }
+            i += length[0];
+        }
+        ssc++;
+        if (mac == null || !Arrays.equals(mac, mac(ksMac, concat(sscBytes(),
+                pad(new byte[]{(byte) command.getCLA(), (byte) command.getINS(),
+                        (byte) command.getP1(), (byte) command.getP2()}),
+                Arrays.copyOfRange(wrapped, 0, macStart))))) {
+            endSession();
+            return new Reply(SW_SM_DATA_OBJECTS_INCORRECT).getBytes();
+        }
+        byte[] data = new byte[0];
+        if (do87 != null)
+            data = unpad(crypt(Cipher.DECRYPT_MODE, ksEnc, Arrays.copyOfRange(do87, 1, do87.length)));
+        return protect(handle(command.getINS(), command.getP1(), command.getP2(), data, ne));
+    }
+
+    private Reply handle(int ins, int p1, int p2, byte[] data, int ne) throws GeneralSecurityException {
+        switch (ins) {
+            case INS_SELECT:
+                return select(p1, data);
+            case INS_GET_CHALLENGE:
+                if (!appletSelected)
+                    return new Reply(SW_CONDITIONS_NOT_SATISFIED);
+                rndIC = new byte[8];
+                random.nextBytes(rndIC);
+                return new Reply(rndIC.clone(), SW_OK);
+            case INS_EXTERNAL_AUTHENTICATE:
+                return externalAuthenticate(data);
+            case INS_READ_BINARY:
+                return readBinary(p1, p2, ne);
+            case INS_INTERNAL_AUTHENTICATE:
+                if (ksMac == null)
+                    return new Reply(SW_SECURITY_STATUS_NOT_SATISFIED);
+                return new Reply(sign(data), SW_OK);
+            default:
+                return new Reply(SW_INS_NOT_SUPPORTED);
+        }
+    }
+
+    private Reply select(int p1, byte[] data) {
+        if (p1 == 0x04) {
+            if (!Arrays.equals(APPLET_AID, data))
+                return new Reply(SW_FILE_NOT_FOUND);
+            endSession();
+            appletSelected = true;
+            return new Reply(SW_OK);
+        }
+        if (ksMac == null)
+            return new Reply(SW_SECURITY_STATUS_NOT_SATISFIED);
+        if (data.length != 2)
+            return new Reply(SW_WRONG_DATA);
+        byte[] file = files.get(((data[0] & 0xFF) << 8) | (data[1] & 0xFF));
+        if (file == null)
+            return new Reply(SW_FILE_NOT_FOUND);
+        selectedFile = file;
+        return new Reply(SW_OK);
+    }
+
+    private Reply readBinary(int p1, int p2, int ne) {
+        if (ksMac == null)
+            return new Reply(SW_SECURITY_STATUS_NOT_SATISFIED);
+        int offset;
+        if ((p1 & 0x80) != 0) {
+            int sfi = p1 & 0x1F;
+            byte[] file = sfi == SFI_DG1 ? files.get(FID_DG1) : sfi == SFI_DG15 ? files.get(FID_DG15) : null;
+            if (file == null)
+                return new Reply(SW_FILE_NOT_FOUND);
+            selectedFile = file;
+            offset = p2;
+        } else {
+            offset = ((p1 & 0x7F) << 8) | p2;
+        }
+        if (selectedFile == null)
+            return new Reply(SW_CONDITIONS_NOT_SATISFIED);
+        if (offset > selectedFile.length)
+            return new Reply(SW_WRONG_P1P2);
+        int length = Math.min(ne == 0 ? 256 : ne, selectedFile.length - offset);
+        return new Reply(Arrays.copyOfRange(selectedFile, offset, offset + length), SW_OK);
+    }
+
+    /**
+     * Second step of BAC, see ICAO Doc 9303 part 11.
+     */
+    private Reply externalAuthenticate(byte[] data) throws GeneralSecurityException {
+        byte[] challenge = rndIC;
+        rndIC = null;
+        if (challenge == null || data.length != 40)
+            return new Reply(SW_CONDITIONS_NOT_SATISFIED);
+        byte[] seed = computeKeySeed();
+        byte[] kEnc = deriveKey(seed, 1);
+        byte[] kMac = deriveKey(seed, 2);
+        byte[] eIFD = Arrays.copyOfRange(data, 0, 32);
+        if (!Arrays.equals(Arrays.copyOfRange(data, 32, 40), mac(kMac, eIFD)))
+            return new Reply(SW_SECURITY_STATUS_NOT_SATISFIED);
+        byte[] s = crypt(Cipher.DECRYPT_MODE, kEnc, eIFD);
+        byte[] rndIFD = Arrays.copyOfRange(s, 0, 8);
+        if (!Arrays.equals(challenge, Arrays.copyOfRange(s, 8, 16)))
+            return new Reply(SW_SECURITY_STATUS_NOT_SATISFIED);
+        byte[] kIFD = Arrays.copyOfRange(s, 16, 32);
+        byte[] kIC = new byte[16];
+        random.nextBytes(kIC);
+        byte[] eIC = crypt(Cipher.ENCRYPT_MODE, kEnc, concat(challenge, rndIFD, kIC));
+        byte[] response = concat(eIC, mac(kMac, eIC));
+
+        byte[] sessionSeed = new byte[16];
+        for (int i = 0; i < sessionSeed.length; i++)
+            sessionSeed[i] = (byte) (kIFD[i] ^ kIC[i]);
+        ksEnc = deriveKey(sessionSeed, 1);
+        ksMac = deriveKey(sessionSeed, 2);
+        ssc = 0;
+        for (int i = 4; i < 8; i++)
+            ssc = (ssc << 8) | (challenge[i] & 0xFF);
+        for (int i = 4; i < 8; i++)
+            ssc = (ssc << 8) | (rndIFD[i] & 0xFF);
+        return new Reply(response, SW_OK);
+    }
+
+    /**
+     * Sign the challenge of the terminal for Active Authentication.
+     */
+    private byte[] sign(byte[] challenge) throws GeneralSecurityException {
+        if (aaKey instanceof RSAPrivateKey) {
+            RSAPrivateKey key = (RSAPrivateKey) aaKey;
+            int k = (key.getModulus().bitLength() + 7) / 8;
+            // ISO 9796-2 scheme 1: 6A || M1 || SHA-1(M1 || M2) || BC, with M2 the challenge
+            byte[] m1 = new byte[k - 22];
+            random.nextBytes(m1);
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(concat(m1, challenge));
+            byte[] f = concat(new byte[]{0x6A}, m1, hash, new byte[]{(byte) 0xBC});
+            BigInteger signature = new BigInteger(1, f).modPow(key.getPrivateExponent(), key.getModulus());
+            return toFixedLength(signature, k);
+        }
+        Signature signer = Signature.getInstance("SHA1withECDSA");
+        signer.initSign(aaKey);
+        signer.update(challenge);
+        byte[] der = signer.sign();
+        int size = (((ECPrivateKey) aaKey).getParams().getCurve().getField().getFieldSize() + 7) / 8;
+        // SEQUENCE { INTEGER r, INTEGER s }
+        int[] r = readLength(der, readLength(der, 1)[1] + 1);
+        int[] s = readLength(der, r[1] + r[0] + 1);
+        return concat(toFixedLength(new BigInteger(1, Arrays.copyOfRange(der, r[1], r[1] + r[0])), size),
+                toFixedLength(new BigInteger(1, Arrays.copyOfRange(der, s[1], s[1] + s[0])), size));
+    }
+
+    /**
+     * Protect a reply with secure messaging.
+     */
+    private byte[] protect(Reply reply) throws GeneralSecurityException {
+        ssc++;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        if (reply.data.length > 0) {
+            byte[] encrypted = crypt(Cipher.ENCRYPT_MODE, ksEnc, pad(reply.data));
+            out.write(0x87);
+            writeLength(out, encrypted.length + 1);
+            out.write(0x01);
+            out.write(encrypted, 0, encrypted.length);
+        }
+        out.write(0x99);
+        out.write(0x02);
+        out.write(reply.sw >> 8);
+        out.write(reply.sw);
+        byte[] objects = out.toByteArray();
+        byte[] mac = mac(ksMac, concat(sscBytes(), objects));
+        out.write(0x8E);
+        out.write(MAC_LENGTH);
+        out.write(mac, 0, mac.length);
+        out.write(reply.sw >> 8);
+        out.write(reply.sw);
+        return out.toByteArray();
+    }
+
+    private void endSession() {
+        ksEnc = null;
+        ksMac = null;
+        rndIC = null;
+        selectedFile = null;
+    }
+
+    private byte[] sscBytes() {
+        byte[] bytes = new byte[8];
+        for (int i = 7; i >= 0; i--)
+            bytes[i] = (byte) (ssc >>> (8 * (7 - i)));
+        return bytes;
+    }
+
+    /**
+     * The key seed of BAC, from the document number, date of birth and date of expiry.
+     */
+    private byte[] computeKeySeed() throws GeneralSecurityException {
+        StringBuilder documentNumber = new StringBuilder(mrzInfo.getDocumentNumber());
+        while (documentNumber.length() < 9)
+            documentNumber.append('<');
+        String information = documentNumber.toString() + checkDigit(documentNumber.toString())
+                + mrzInfo.getDateOfBirth() + checkDigit(mrzInfo.getDateOfBirth())
+                + mrzInfo.getDateOfExpiry() + checkDigit(mrzInfo.getDateOfExpiry());
+        byte[] hash = MessageDigest.getInstance("SHA-1").digest(information.getBytes());
+        return Arrays.copyOf(hash, 16);
+    }
+
+    private static char checkDigit(String field) {
+        int[] weights = {7, 3, 1};
+        int sum = 0;
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            int value = c == '<' ? 0 : Character.isDigit(c) ? c - '0' : c - 'A' + 10;
+            sum += value * weights[i % 3];
+        }
+        return (char) ('0' + sum % 10);
+    }
+
+    private static byte[] deriveKey(byte[] seed, int counter) throws GeneralSecurityException {
+        byte[] hash = MessageDigest.getInstance("SHA-1").digest(concat(seed, new byte[]{0, 0, 0, (byte) counter}));
+        return Arrays.copyOf(hash, 16);
+    }
+
+    /**
+     * Two key triple DES in CBC mode with a zero IV.
+     */
+    private static byte[] crypt(int mode, byte[] key, byte[] data) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance("DESede/CBC/NoPadding");
+        cipher.init(mode, new SecretKeySpec(concat(key, Arrays.copyOf(key, 8)), "DESede"),
+                new IvParameterSpec(new byte[8]));
+        return cipher.doFinal(data);
+    }
+
+    /**
+     * ISO 9797-1 MAC algorithm 3 with padding method 2.
+     */
+    private static byte[] mac(byte[] key, byte[] data) throws GeneralSecurityException {
+        byte[] padded = pad(data);
+        Cipher k1 = Cipher.getInstance("DES/ECB/NoPadding");
+        k1.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, 0, 8, "DES"));
+        byte[] h = new byte[8];
+        for (int i = 0; i < padded.length; i += 8) {
+            for (int j = 0; j < 8; j++)
+                h[j] ^= padded[i + j];
+            h = k1.doFinal(h);
+        }
+        Cipher k2 = Cipher.getInstance("DES/ECB/NoPadding");
+        k2.init(Cipher.DECRYPT_MODE, new SecretKeySpec(key, 8, 8, "DES"));
+        return k1.doFinal(k2.doFinal(h));
+    }
+
+    /**
+     * ISO 9797-1 padding method 2.
+     */
+    private static byte[] pad(byte[] data) {
+        byte[] padded = Arrays.copyOf(data, (data.length / 8 + 1) * 8);
+        padded[data.length] = (byte) 0x80;
+        return padded;
+    }
+
+    private static byte[] unpad(byte[] data) {
+        int i = data.length - 1;
+        while (i > 0 && data[i] == 0)
+            i--;
+        return Arrays.copyOf(data, i);
+    }
+
+    /**
+     * @return the length and the offset of the value.
+     */
+    private static int[] readLength(byte[] data, int offset) {
+        int first = data[offset++] & 0xFF;
+        if (first < 0x80)
+            return new int[]{first, offset};
+        int length = 0;
+        for (int i = 0; i < (first & 0x7F); i++)
+            length = (length << 8) | (data[offset++] & 0xFF);
+        return new int[]{length, offset};
+    }
+
+    private static void writeLength(ByteArrayOutputStream out, int length) {
+        if (length >= 0x100) {
+            out.write(0x82);
+            out.write(length >> 8);
+        } else if (length >= 0x80) {
+            out.write(0x81);
+        }
+        out.write(length);
+    }
+
+    private static byte[] toFixedLength(BigInteger value, int length) {
+        byte[] bytes = value.toByteArray();
+        byte[] fixed = new byte[length];
+        int copy = Math.min(bytes.length, length);
+        System.arraycopy(bytes, bytes.length - copy, fixed, length - copy, copy);
+        return fixed;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts)
+            out.write(part, 0, part.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Response data and status word of a command.
+     */
+    private static class Reply {
+        private final byte[] data;
+        private final int sw;
+
+        Reply(int sw) {
+            this(new byte[0], sw);
+        }
+
+        Reply(byte[] data, int sw) {
+            this.data = data;
+            this.sw = sw;
+        }
+
+        byte[] getBytes() {
+            byte[] bytes = Arrays.copyOf(data, data.length + 2);
+            bytes[data.length] = (byte) (sw >> 8);
+            bytes[data.length + 1] = (byte) sw;
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.digitalvotingpass.passportconnection;
+
+import com.digitalvotingpass.digitalvotingpass.DocumentData;
+import com.digitalvotingpass.digitalvotingpass.Voter;
+
+import net.sf.scuba.data.Gender;
+import net.sf.scuba.smartcards.CardServiceException;
+
+import org.jmrtd.PassportService;
+import org.jmrtd.lds.MRZInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.interfaces.RSAPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the passport connection against the simulated document, through BAC and secure messaging.
+ */
+public class SimulatedPassportCardServiceTest {
+    private static final String DOCUMENT_NUMBER = "SPECI2014";
+    private static final String DATE_OF_BIRTH = "650310";
+    private static final String DATE_OF_EXPIRY = "240309";
+
+    private KeyPair keyPair;
+    private SimulatedPassportCardService card;
+    private DocumentData documentData;
+
+    @Before
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        keyPair = generator.generateKeyPair();
+        card = new SimulatedPassportCardService(mrzInfo(), keyPair);
+
+        documentData = new DocumentData();
+        documentData.setDocumentNumber(DOCUMENT_NUMBER);
+        documentData.setDateOfBirth(DATE_OF_BIRTH);
+        documentData.setExpiryDate(DATE_OF_EXPIRY);
+    }
+
+    static MRZInfo mrzInfo() {
+        return new MRZInfo("P<", "NLD", "DE BRUIJN", "WILLEKE LISELOTTE", DOCUMENT_NUMBER, "NLD",
+                DATE_OF_BIRTH, Gender.FEMALE, DATE_OF_EXPIRY, "999999990");
+    }
+
+    @Test
+    public void testReadDocument() throws Exception {
+        PassportConnection pcon = new PassportConnection();
+        PassportService ps = pcon.openConnection(card, documentData);
+
+        assertArrayEquals(keyPair.getPublic().getEncoded(), pcon.getAAPublicKey(ps).getEncoded());
+        Voter voter = pcon.getVoter(ps);
+        assertEquals("Willeke liselotte", voter.getFirstName());
+        assertEquals("de Bruijn", voter.getLastName());
+        assertEquals(Gender.FEMALE, voter.getGender());
+    }
+
+    @Test
+    public void testWrongBacKey() throws Exception {
+        documentData.setDateOfBirth("650311");
+        try {
+            new PassportConnection().openConnection(card, documentData);
+            fail("BAC should fail with the wrong date of birth");
+        } catch (CardServiceException expected) {
+            // the document rejects the key
+        }
+    }
+
+    /**
+     * Signing over secure messaging should take a single APDU per signature.
+     */
+    @Test
+    public void testSignData() throws Exception {
+        PassportConnection pcon = new PassportConnection();
+        PassportService ps = pcon.openConnection(card, documentData);
+        card.resetCommandCounts();
+
+        byte[] challenge = new byte[]{0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08};
+        for (int i = 0; i < 4; i++) {
+            assertRsaSignature(challenge, pcon.signData(ps, challenge));
+        }
+        assertEquals(4, card.getCommandCount());
+        assertEquals(4, card.getCommandCount(SimulatedPassportCardService.INS_INTERNAL_AUTHENTICATE));
+    }
+
+    @Test
+    public void testSignDataEcdsa() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp384r1"));
+        card = new SimulatedPassportCardService(mrzInfo(), generator.generateKeyPair());
+        PassportConnection pcon = new PassportConnection();
+        PassportService ps = pcon.openConnection(card, documentData);
+
+        assertEquals(96, pcon.signData(ps, new byte[8]).length);
+    }
+
+    /**
+     * Check the ISO 9796-2 scheme 1 message recovered from an AA signature.
+     */
+    private void assertRsaSignature(byte[] challenge, byte[] signature) throws Exception {
+        RSAPublicKey key = (RSAPublicKey) keyPair.getPublic();
+        byte[] f = new BigInteger(1, signature).modPow(key.getPublicExponent(), key.getModulus()).toByteArray();
+        assertEquals(0x6A, f[0]);
+        assertEquals((byte) 0xBC, f[f.length - 1]);
+        byte[] m1 = Arrays.copyOfRange(f, 1, f.length - 21);
+        MessageDigest digest = MessageDigest.getInstance("SHA-1");
+        digest.update(m1);
+        digest.update(challenge);
+        assertArrayEquals(digest.digest(), Arrays.copyOfRange(f, f.length - 21, f.length - 1));
+    }
+}
@@ -0,0 +1,30 @@
+package com.digitalvotingpass.passportconnection;
+
+import net.sf.scuba.smartcards.CardServiceException;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VoterCheckPipelineTest {
+    @Test
+    public void testTagLostMessageFromScuba() {
+        assertTrue(VoterCheckPipeline.isTagLost(new CardServiceException("android.nfc.TagLostException: Tag was lost.")));
+    }
+
+    @Test
+    public void testTagLostWrapped() {
+        Exception wrapped = new IOException("Reading DG1 failed",
+                new CardServiceException("Tag was lost."));
+        assertTrue(VoterCheckPipeline.isTagLost(wrapped));
+    }
+
+    @Test
+    public void testOtherFailures() {
+        assertFalse(VoterCheckPipeline.isTagLost(new CardServiceException("Mutual authentication failed")));
+        assertFalse(VoterCheckPipeline.isTagLost(new IOException("Transceive failed")));
+    }
+}
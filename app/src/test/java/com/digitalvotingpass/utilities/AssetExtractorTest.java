@@ -0,0 +1,139 @@
+package com.digitalvotingpass.utilities;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AssetExtractorTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final byte[] CONTENT = "MRZ model".getBytes(UTF_8);
+    private static final String CONTENT_SHA256 = "90acabac004f5e4b303845fdd665e0d717dc6c85de80535f593e8d3476766708";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private AssetExtractor extractor;
+
+    private static InputStream stream(String text) {
+        return new ByteArrayInputStream(text.getBytes(UTF_8));
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] bytes = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                offset += in.read(bytes, offset, bytes.length - offset);
+            }
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        String sha256 = AssetExtractor.copy(new ByteArrayInputStream(CONTENT), folder.newFile("hash"), null);
+        extractor = new AssetExtractor(stream("# comment\n\nmodel " + CONTENT.length + " " + sha256.toUpperCase() + "\n"));
+    }
+
+    @Test
+    public void testManifest() throws Exception {
+        assertEquals(CONTENT.length, extractor.get("model").getSize());
+        assertEquals(CONTENT_SHA256, extractor.get("model").getSha256());
+        assertNull(extractor.get("comment"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidManifest() throws Exception {
+        new AssetExtractor(stream("model 12\n"));
+    }
+
+    @Test
+    public void testExtract() throws Exception {
+        File file = new File(folder.getRoot(), "tessdata/model");
+        assertFalse(extractor.isIntact("model", file));
+        extractor.extract("model", new ByteArrayInputStream(CONTENT), file);
+        assertArrayEquals(CONTENT, read(file));
+        assertTrue(extractor.isIntact("model", file));
+        // No temporary file is left
+        assertEquals(Arrays.asList("model"), Arrays.asList(file.getParentFile().list()));
+    }
+
+    @Test
+    public void testCorruptNotIntact() throws Exception {
+        File file = folder.newFile("model");
+        // Partly copied
+        write(file, Arrays.copyOf(CONTENT, CONTENT.length - 2));
+        assertFalse(extractor.isIntact("model", file));
+        // Same size, other content
+        byte[] changed = CONTENT.clone();
+        changed[0]++;
+        write(file, changed);
+        assertFalse(extractor.isIntact("model", file));
+    }
+
+    @Test
+    public void testMismatchKeepsFile() throws Exception {
+        File file = folder.newFile("model");
+        write(file, CONTENT);
+        try {
+            extractor.extract("model", stream("other content"), file);
+            fail("Content that does not match the manifest should not be extracted");
+        } catch (IOException e) {
+            // Expected
+        }
+        assertArrayEquals(CONTENT, read(file));
+        assertTrue(extractor.isIntact("model", file));
+        assertEquals(2, folder.getRoot().list().length);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotInManifest() throws Exception {
+        extractor.extract("other", new ByteArrayInputStream(CONTENT), folder.newFile("other"));
+    }
+
+    @Test
+    public void testSha256() throws Exception {
+        File file = folder.newFile("model");
+        write(file, CONTENT);
+        assertEquals(CONTENT_SHA256, AssetExtractor.sha256(file));
+    }
+
+    /**
+     * The manifest in the assets should be updated when an asset changes.
+     */
+    @Test
+    public void testAssetsMatchManifest() throws Exception {
+        File assets = new File("src/main/assets");
+        AssetExtractor assetExtractor = new AssetExtractor(new FileInputStream(new File(assets, AssetExtractor.MANIFEST)));
+        assertTrue(assetExtractor.isIntact("ocrb.traineddata", new File(assets, "ocrb.traineddata")));
+    }
+}
@@ -0,0 +1,58 @@
+package com.digitalvotingpass.utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the String based address derivation with {@link MultiChainAddressDeriver}.
+ * Run with the main method from the unit test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MultiChainAddressGeneratorBenchmark {
+    private static final String[] VERSION = {"00", "62", "8f", "ed"};
+    private static final String ADDRESS_CHECKSUM = Long.toString(0xcc350cafL);
+
+    private byte[] pubKey;
+    private MultiChainAddressDeriver deriver;
+
+    @Setup
+    public void setUp() {
+        pubKey = new byte[MultiChainAddressGenerator.RAW_PUBLIC_KEY_LENGTH];
+        new Random(42).nextBytes(pubKey);
+        deriver = new MultiChainAddressDeriver(VERSION, ADDRESS_CHECKSUM);
+    }
+
+    @Benchmark
+    public String legacyStringDerivation() {
+        return LegacyMultiChainAddressGenerator.getPublicAddress(VERSION, ADDRESS_CHECKSUM, pubKey);
+    }
+
+    @Benchmark
+    public String byteDerivation() {
+        return deriver.getPublicAddress(pubKey);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(MultiChainAddressGeneratorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
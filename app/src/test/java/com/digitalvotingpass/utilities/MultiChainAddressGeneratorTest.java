@@ -2,7 +2,11 @@ package com.digitalvotingpass.utilities;
 
 import org.junit.Test;
 
+import java.util.Random;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 public class MultiChainAddressGeneratorTest {
     @Test
@@ -28,4 +32,44 @@ public class MultiChainAddressGeneratorTest {
         String address = generator.getPublicAddress(version, addresschecksum, keybytes);
         assertEquals(address, "1BNgsh92p1wFmKiQVPs9fNyriG72wygs9esHV8");
     }
+
+    @Test
+    public void testDeriverMatchesLegacyDerivation() throws Exception {
+        // BlockChain passes the checksum as a decimal String, this must keep working the same
+        String[] version = new String[]{"00", "62", "8f", "ed"};
+        String addresschecksum = Long.toString(0xcc350cafL);
+
+        MultiChainAddressDeriver deriver = new MultiChainAddressDeriver(version, addresschecksum);
+        Random random = new Random(7);
+        byte[] keybytes = new byte[MultiChainAddressGenerator.RAW_PUBLIC_KEY_LENGTH];
+        for (int i = 0; i < 100; i++) {
+            random.nextBytes(keybytes);
+            assertEquals(LegacyMultiChainAddressGenerator.getPublicAddress(version, addresschecksum, keybytes),
+                    deriver.getPublicAddress(keybytes));
+        }
+    }
+
+    @Test
+    public void testDeriverWithOffset() throws Exception {
+        String[] version = new String[]{"00", "AF", "EA", "21"};
+        String pubKey = "0284E5235E299AF81EBE1653AC5F06B60E13A3A81F918018CBD10CE695095B3E24";
+        byte[] keybytes = Util.hexStringToByteArray("FFFF" + pubKey);
+
+        MultiChainAddressDeriver deriver = new MultiChainAddressDeriver(version, "953ABC69");
+        assertEquals("1Yu2BuptuZSiBWfr2Qy4aic6qEVnwPWrdkHPEc", deriver.getPublicAddress(keybytes, 2, keybytes.length - 2));
+    }
+
+    @Test
+    public void testDeriverSharedPerChain() throws Exception {
+        String[] version = new String[]{"00", "AF", "EA", "21"};
+        MultiChainAddressDeriver deriver = MultiChainAddressGenerator.getDeriver(version, "953ABC69");
+        assertSame(deriver, MultiChainAddressGenerator.getDeriver(version.clone(), "953ABC69"));
+        assertNotSame(deriver, MultiChainAddressGenerator.getDeriver(version, "5afce7b2"));
+        assertNotSame(deriver, MultiChainAddressGenerator.getDeriver(new String[]{"00", "8c", "b5", "d6"}, "953ABC69"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeriverInvalidVersion() throws Exception {
+        new MultiChainAddressDeriver(new String[]{"00", "AF", "EA"}, "953ABC69");
+    }
 }
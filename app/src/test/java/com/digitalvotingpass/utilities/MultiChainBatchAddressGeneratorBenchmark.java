@@ -0,0 +1,86 @@
+package com.digitalvotingpass.utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput in addresses per second of deriving a voter roll one key at a time versus the
+ * parallel {@link MultiChainBatchAddressGenerator}.
+ * Run with the main method from the unit test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MultiChainBatchAddressGeneratorBenchmark {
+    private static final String[] VERSION = {"00", "62", "8f", "ed"};
+    private static final String ADDRESS_CHECKSUM = Long.toString(0xcc350cafL);
+    private static final int ROLL_SIZE = 20000;
+
+    private List<byte[]> roll;
+    private MultiChainAddressDeriver deriver;
+    private MultiChainBatchAddressGenerator generator;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        roll = new ArrayList<>(ROLL_SIZE);
+        for (int i = 0; i < ROLL_SIZE; i++) {
+            byte[] key = new byte[MultiChainAddressGenerator.RAW_PUBLIC_KEY_LENGTH];
+            random.nextBytes(key);
+            roll.add(key);
+        }
+        deriver = new MultiChainAddressDeriver(VERSION, ADDRESS_CHECKSUM);
+        generator = new MultiChainBatchAddressGenerator(VERSION, ADDRESS_CHECKSUM);
+    }
+
+    @TearDown
+    public void tearDown() {
+        generator.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROLL_SIZE)
+    public void sequential(Blackhole blackhole) {
+        for (byte[] key : roll) {
+            blackhole.consume(deriver.getPublicAddress(key));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROLL_SIZE)
+    public void batch(final Blackhole blackhole) {
+        generator.derive(roll, new MultiChainBatchAddressGenerator.AddressSink() {
+            @Override
+            public void onAddress(long index, byte[] pubKey, String address) {
+                blackhole.consume(address);
+            }
+        });
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(MultiChainBatchAddressGeneratorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,79 @@
+package com.digitalvotingpass.utilities;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class MultiChainBatchAddressGeneratorTest {
+    private static final String[] VERSION = {"00", "62", "8f", "ed"};
+    private static final String ADDRESS_CHECKSUM = Long.toString(0xcc350cafL);
+
+    private MultiChainAddressDeriver deriver;
+    private MultiChainBatchAddressGenerator generator;
+    private final ConcurrentHashMap<Long, String> results = new ConcurrentHashMap<>();
+    private final MultiChainBatchAddressGenerator.AddressSink sink = new MultiChainBatchAddressGenerator.AddressSink() {
+        @Override
+        public void onAddress(long index, byte[] pubKey, String address) {
+            results.put(index, address);
+        }
+    };
+
+    @Before
+    public void setUp() {
+        deriver = new MultiChainAddressDeriver(VERSION, ADDRESS_CHECKSUM);
+        generator = new MultiChainBatchAddressGenerator(deriver, new ForkJoinPool(4));
+    }
+
+    @After
+    public void tearDown() {
+        generator.shutdown();
+    }
+
+    private List<byte[]> randomKeys(int amount) {
+        Random random = new Random(3);
+        List<byte[]> keys = new ArrayList<>();
+        for (int i = 0; i < amount; i++) {
+            byte[] key = new byte[MultiChainAddressGenerator.RAW_PUBLIC_KEY_LENGTH];
+            random.nextBytes(key);
+            keys.add(key);
+        }
+        return keys;
+    }
+
+    @Test
+    public void testDeriveList() {
+        List<byte[]> keys = randomKeys(MultiChainBatchAddressGenerator.SPLIT_THRESHOLD * 3 + 5);
+        generator.derive(keys, sink);
+
+        assertEquals(keys.size(), results.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(deriver.getPublicAddress(keys.get(i)), results.get((long) i));
+        }
+    }
+
+    @Test
+    public void testDeriveIterator() {
+        List<byte[]> keys = randomKeys(MultiChainBatchAddressGenerator.CHUNK_SIZE + 10);
+        generator.derive(keys.iterator(), sink);
+
+        assertEquals(keys.size(), results.size());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(deriver.getPublicAddress(keys.get(i)), results.get((long) i));
+        }
+    }
+
+    @Test
+    public void testDeriveEmpty() {
+        generator.derive(new ArrayList<byte[]>(), sink);
+        generator.derive(new ArrayList<byte[]>().iterator(), sink);
+        assertEquals(0, results.size());
+    }
+}